@@ -0,0 +1,320 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * The shortest paths by the number of the edges in a CompactGraph by the
+ * breadth-first search over the int arrays.
+ *
+ * The search of all vertices is direction-optimizing: a small frontier is
+ * expanded top-down over the outgoing edges of its vertices, and a big one
+ * bottom-up: every vertex not reached yet looks for a parent in the frontier
+ * among its incoming edges and stops at the first one. On a social graph the
+ * middle levels hold most of the vertices, so the bottom-up steps skip most
+ * of their edges. The search switches to the bottom-up steps when the edges
+ * of the frontier are more than 1/ALPHA of the edges not explored yet,
+ * and back when the frontier is less than 1/BETA of the vertices.
+ *
+ * The path between two vertices is found by two searches at once, forward
+ * from the start and backward from the goal over the incoming edges, always
+ * expanding the frontier with fewer edges, until they meet. Two vertices of
+ * a social graph are a few levels apart, so the searches stop long before
+ * the frontiers grow big.
+ *
+ * The arrays of the search are kept for the next one, and only the entries
+ * of the vertices visited by the last search are cleared, so a query costs
+ * O(visited) and not O(V).
+ *
+ */
+package graph;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+public class BreadthFirst {
+	private static final int ALPHA = 14;
+	private static final int BETA = 24;
+
+	private final CompactGraph graph;
+	// the distances and the parents from the start, -1 if not reached
+	private int[] depth;
+	private int[] parent;
+	// the distances and the next vertices to the goal, -1 if not reached
+	private int[] rDepth;
+	private int[] rNext;
+	private int[] frontier;
+	private int[] next;
+	private int[] rFrontier;
+	private int[] rNextFrontier;
+	// the vertices reached by the last search, to clear them for the next one
+	private int[] visited;
+	private int visitedCount;
+
+	/**
+	 * Create a new BreadthFirst for the graph.
+	 * @param g the graph.
+	 */
+	public BreadthFirst(CompactGraph g) {
+		this.graph = g;
+		this.depth = null;
+		this.visitedCount = 0;
+	}
+
+	/**
+	 * Get the graph of the search.
+	 * @return The graph.
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Find the distances from the vertex to all vertices.
+	 * @param start the dense id of the start.
+	 * @return The number of the edges to every dense vertex, -1 if it isn't reached.
+	 */
+	public int[] run(int start) {
+		search(start);
+		return Arrays.copyOf(depth, depth.length);
+	}
+
+	/**
+	 * Get the parents of the last run.
+	 * @return The previous vertex of the shortest path to every dense vertex,
+	 *   -1 for the start and the vertices not reached.
+	 */
+	public int[] getParents() {
+		return parent == null ? null : Arrays.copyOf(parent, parent.length);
+	}
+
+	/**
+	 * Find a shortest path between two vertices by the bidirectional search.
+	 * @param start the number of the start vertex.
+	 * @param goal the number of the goal vertex.
+	 * @return The numbers of the vertices of the path from start to goal
+	 *   including both, an empty list if there is no path.
+	 */
+	public List<Integer> path(int start, int goal) {
+		int s = graph.indexOf(start);
+		int g = graph.indexOf(goal);
+		LinkedList<Integer> path = new LinkedList<Integer>();
+		if(s < 0 || g < 0) {
+			return path;
+		}
+		int meet = meet(s, g);
+		if(meet < 0) {
+			return path;
+		}
+		int[] points = graph.points();
+		for(int v = meet; v >= 0; v = parent[v]) {
+			path.addFirst(points[v]);
+		}
+		for(int v = rNext[meet]; v >= 0; v = rNext[v]) {
+			path.addLast(points[v]);
+		}
+		return path;
+	}
+
+	/**
+	 * Allocate the arrays at the first search or clear the vertices
+	 * reached by the last one.
+	 */
+	private void reset() {
+		if(depth == null) {
+			int n = graph.getNumVertices();
+			depth = new int[n];
+			parent = new int[n];
+			rDepth = new int[n];
+			rNext = new int[n];
+			Arrays.fill(depth, -1);
+			Arrays.fill(parent, -1);
+			Arrays.fill(rDepth, -1);
+			Arrays.fill(rNext, -1);
+			frontier = new int[n];
+			next = new int[n];
+			rFrontier = new int[n];
+			rNextFrontier = new int[n];
+			visited = new int[2 * n];
+		}
+		for(int i = 0; i < visitedCount; i++) {
+			int v = visited[i];
+			depth[v] = -1;
+			parent[v] = -1;
+			rDepth[v] = -1;
+			rNext[v] = -1;
+		}
+		visitedCount = 0;
+	}
+
+	/**
+	 * Search from the start and from the goal until the searches meet.
+	 * @param s the dense id of the start.
+	 * @param g the dense id of the goal.
+	 * @return The vertex of a shortest path reached by both searches, -1 if there is no path.
+	 */
+	private int meet(int s, int g) {
+		reset();
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		int[] rOffsets = graph.reverseOffsets();
+		int[] rTargets = graph.reverseTargets();
+		depth[s] = 0;
+		rDepth[g] = 0;
+		visited[visitedCount++] = s;
+		visited[visitedCount++] = g;
+		if(s == g) {
+			return s;
+		}
+		frontier[0] = s;
+		rFrontier[0] = g;
+		int size = 1;
+		int rSize = 1;
+		long edges = offsets[s + 1] - offsets[s];
+		long rEdges = rOffsets[g + 1] - rOffsets[g];
+		while(size > 0 && rSize > 0) {
+			int best = Integer.MAX_VALUE;
+			int meet = -1;
+			if(edges <= rEdges) {
+				int nextSize = 0;
+				edges = 0;
+				for(int i = 0; i < size; i++) {
+					int v = frontier[i];
+					for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+						int t = targets[e];
+						if(depth[t] >= 0) {
+							continue;
+						}
+						depth[t] = depth[v] + 1;
+						parent[t] = v;
+						visited[visitedCount++] = t;
+						next[nextSize++] = t;
+						edges += offsets[t + 1] - offsets[t];
+						if(rDepth[t] >= 0 && depth[t] + rDepth[t] < best) {
+							best = depth[t] + rDepth[t];
+							meet = t;
+						}
+					}
+				}
+				int[] tmp = frontier;
+				frontier = next;
+				next = tmp;
+				size = nextSize;
+			} else {
+				int nextSize = 0;
+				rEdges = 0;
+				for(int i = 0; i < rSize; i++) {
+					int v = rFrontier[i];
+					for(int e = rOffsets[v]; e < rOffsets[v + 1]; e++) {
+						int u = rTargets[e];
+						if(rDepth[u] >= 0) {
+							continue;
+						}
+						rDepth[u] = rDepth[v] + 1;
+						rNext[u] = v;
+						visited[visitedCount++] = u;
+						rNextFrontier[nextSize++] = u;
+						rEdges += rOffsets[u + 1] - rOffsets[u];
+						if(depth[u] >= 0 && depth[u] + rDepth[u] < best) {
+							best = depth[u] + rDepth[u];
+							meet = u;
+						}
+					}
+				}
+				int[] tmp = rFrontier;
+				rFrontier = rNextFrontier;
+				rNextFrontier = tmp;
+				rSize = nextSize;
+			}
+			if(meet >= 0) {
+				return meet;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Search by levels from the start until all vertices are reached.
+	 * @param s the dense id of the start.
+	 */
+	private void search(int s) {
+		reset();
+		int n = graph.getNumVertices();
+		int[] offsets = graph.offsets();
+		depth[s] = 0;
+		visited[visitedCount++] = s;
+		frontier[0] = s;
+		int size = 1;
+		// the edges of the vertices not reached yet
+		long unexplored = offsets[n] - (offsets[s + 1] - offsets[s]);
+		long frontierEdges = offsets[s + 1] - offsets[s];
+		boolean bottomUp = false;
+		for(int level = 0; size > 0; level++) {
+			if(!bottomUp && frontierEdges > unexplored / ALPHA) {
+				bottomUp = true;
+			} else if(bottomUp && size < n / BETA) {
+				bottomUp = false;
+			}
+			int nextSize = bottomUp ? bottomUpStep(level) : topDownStep(level, size);
+			frontierEdges = 0;
+			for(int i = 0; i < nextSize; i++) {
+				int v = next[i];
+				visited[visitedCount++] = v;
+				frontierEdges += offsets[v + 1] - offsets[v];
+			}
+			unexplored -= frontierEdges;
+			int[] t = frontier;
+			frontier = next;
+			next = t;
+			size = nextSize;
+		}
+	}
+
+	/**
+	 * Reach the ends of the outgoing edges of the frontier.
+	 * @param level the depth of the frontier.
+	 * @param size the number of the vertices of the frontier.
+	 * @return The size of the next frontier.
+	 */
+	private int topDownStep(int level, int size) {
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		int nextSize = 0;
+		for(int i = 0; i < size; i++) {
+			int v = frontier[i];
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				int t = targets[e];
+				if(depth[t] < 0) {
+					depth[t] = level + 1;
+					parent[t] = v;
+					next[nextSize++] = t;
+				}
+			}
+		}
+		return nextSize;
+	}
+
+	/**
+	 * Find a parent in the frontier for every vertex not reached yet.
+	 * @param level the depth of the frontier.
+	 * @return The size of the next frontier.
+	 */
+	private int bottomUpStep(int level) {
+		int[] rOffsets = graph.reverseOffsets();
+		int[] rTargets = graph.reverseTargets();
+		int nextSize = 0;
+		for(int v = 0; v < depth.length; v++) {
+			if(depth[v] >= 0) {
+				continue;
+			}
+			for(int e = rOffsets[v]; e < rOffsets[v + 1]; e++) {
+				int u = rTargets[e];
+				if(depth[u] == level) {
+					depth[v] = level + 1;
+					parent[v] = u;
+					next[nextSize++] = v;
+					break;
+				}
+			}
+		}
+		return nextSize;
+	}
+}
@@ -4,19 +4,21 @@
  * Implementation of  Graph in a class
  * named CapGraph.  
  *
+ * The queries of the paths and the egonets only read the graph and run
+ * on its compact copy, so many threads may query one CapGraph at once
+ * as long as nobody changes it meanwhile.
+ *
  */
 package graph;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 import util.GraphLoader;
 
@@ -27,6 +29,24 @@ public class CapGraph implements Graph {
 	private boolean multiclustering;
 	private List <HashSet<Integer>> clusters;
 	private HashSet<CommunityNode> communitySet;
+	private int betweennessThreads;
+	private double samplingEpsilon;
+	private double samplingDelta;
+	private long samplingSeed;
+	private int communityThreads;
+	private long communitySeed;
+	private int sccThreads;
+	// the compact copy for the read-only queries and the changes it has seen
+	private CompactGraph snapshot;
+	private int snapshotModCount;
+	private int modCount;
+	// the path search by the number of edges: true, false or null to detect
+	private Boolean unweightedPaths;
+	// the path queries of the snapshot and the changes they have seen
+	private volatile PathQuery paths;
+	private int pathsModCount;
+	// the states of the finished queries, taken by the next ones
+	private final ConcurrentLinkedDeque<PathQuery> idleQueries;
 	
 	/**
 	 * Create a new empty CapGraph
@@ -39,6 +59,16 @@ public class CapGraph implements Graph {
 		multiclustering = false;
 		clusters = new ArrayList<HashSet<Integer>>();
 		communitySet = new HashSet<CommunityNode>();
+		betweennessThreads = 1;
+		samplingEpsilon = 0;
+		communityThreads = 1;
+		sccThreads = 1;
+		snapshot = null;
+		modCount = 0;
+		unweightedPaths = null;
+		paths = null;
+		idleQueries = new ConcurrentLinkedDeque<PathQuery>();
+		communitySeed = 0;
 	}
 
 	/**
@@ -72,6 +102,7 @@ public class CapGraph implements Graph {
 		if(this.getVertex(num) == null) {
 			GraphNode node = new GraphNode(num);
 			vertexMap.put(num, node);
+			modCount++;
 		}	
 	}
 	
@@ -96,6 +127,7 @@ public class CapGraph implements Graph {
 		GraphNode end = this.getVertex(to);
 		start.addEdge(end);
 		numEdges++;
+		modCount++;
 	}
 	
 	/**
@@ -135,6 +167,57 @@ public class CapGraph implements Graph {
 		multiclustering = f;
 	}
 	
+	/**
+	 * Set the number of the threads computing the betweenness of edges.
+	 * @param threads the number of the threads, 1 for the sequential computation.
+	 */	
+	public void setBetweennessThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+		}
+		betweennessThreads = threads;
+	}
+	
+	/**
+	 * Estimate the betweenness of edges by the sampled sources
+	 * instead of the exact computation.
+	 * @param epsilon the allowed error as the part of the number of pairs of vertices, 0 for the exact computation.
+	 * @param delta the allowed probability of the bigger error.
+	 * @param seed the seed of the choice of the sources.
+	 */	
+	public void setBetweennessSampling(double epsilon, double delta, long seed) {
+		samplingEpsilon = epsilon;
+		samplingDelta = delta;
+		samplingSeed = seed;
+	}
+	
+	/**
+	 * Set the number of the threads moving the vertices between communities.
+	 * The parallel result depends on the seed only, not on the number of threads.
+	 * @param threads the number of the threads, 1 for the sequential moving.
+	 * @param seed the seed of the order of the vertices of the parallel moving.
+	 */	
+	public void setCommunityThreads(int threads, long seed) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+		}
+		communityThreads = threads;
+		communitySeed = seed;
+	}
+	
+	/**
+	 * Create the betweenness of edges of the current graph by the settings.
+	 * @return The EdgeBetweenness.
+	 */	
+	private EdgeBetweenness newEdgeBetweenness() {
+		EdgeBetweenness eb = new EdgeBetweenness(toCompactGraph());
+		eb.setParallelism(betweennessThreads);
+		if (samplingEpsilon > 0) {
+			eb.setSampling(samplingEpsilon, samplingDelta, samplingSeed);
+		}
+		return eb;
+	}
+	
 	/** 
 	 * Finds the egonet centered at a given node.
 	 * @param from the index of the start point for the egonet.
@@ -142,32 +225,24 @@ public class CapGraph implements Graph {
 	 */
 	@Override
 	public Graph getEgonet(int center) {
-		// add center point
-		CapGraph en = new CapGraph();
-		en.addVertex(center);
-		GraphNode c = this.getVertex(center);
-		// get neighbors
-	    Iterator<Integer> np = (c.getNeighborPoints()).iterator();
-	    while (np.hasNext()) {
-	    	en.addVertex(np.next());
-	    }
-	    // get edges having from vertices
-	    Iterator<Integer> v = (en.getVertexes()).iterator();
-	    while (v.hasNext()) {
-	    	Integer next = v.next();
-	    	GraphNode start = this.getVertex(next);
-	    	GraphNode startEn = en.getVertex(next);
-		    Iterator<Integer> e = (start.getNeighborPoints()).iterator();
-		    while (e.hasNext()) {
-		    	Integer to = e.next();
-				if(en.getVertex(to) == null) {
-					continue;
-				}	
-				GraphNode endEn = en.getVertex(to);
-				startEn.addEdge(endEn);
-		    }	    	
-	    }   
-		return en;
+		return snapshot().getEgonet(center);
+	}
+
+	/**
+	 * Build the egonets of many vertices by the threads and pass every
+	 * one to the handler without keeping them.
+	 * @param centers the numbers of the centers, null for all vertexes.
+	 * @param threads the number of the threads.
+	 * @param handler the receiver of the egonets, called by the threads at once.
+	 */
+	public void forEachEgonet(int[] centers, int threads, Egonets.Handler handler) {
+		Egonets egonets = new Egonets(snapshot());
+		egonets.setParallelism(threads);
+		if (centers == null) {
+			egonets.forAll(handler);
+		} else {
+			egonets.forEach(centers, handler);
+		}
 	}
 
 	/**
@@ -178,8 +253,20 @@ public class CapGraph implements Graph {
      */
 	@Override
 	public List<Graph> getSCCs() {
-		Dfs d = new Dfs();
-		return d.getSCCs(this);
+		StronglyConnected scc = new StronglyConnected(toCompactGraph());
+		scc.setParallelism(sccThreads);
+		return scc.getGraphs();
+	}
+	
+	/**
+	 * Set the number of the threads finding the SCCs.
+	 * @param threads the number of the threads, 1 for the single Tarjan pass.
+	 */	
+	public void setSCCThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+		}
+		sccThreads = threads;
 	}
 
     /** 
@@ -202,106 +289,154 @@ public class CapGraph implements Graph {
 		return eg;
 	}
 	
-	/** 
-	 *  Set default distances for all nodes
+	/**
+	 * Copy the graph into the compact CSR representation.
+	 * @return The CompactGraph with the same vertices, edges and weights.
 	 */
-	public void setDefaultDistances() {
-	    Iterator<GraphNode> i = (this.vertexMap.values()).iterator();
-		while (i.hasNext()) {
-			GraphNode node = i.next();
-			node.setDefaultDistance();		
+	public CompactGraph toCompactGraph() {
+		CompactGraph.Builder builder = new CompactGraph.Builder(getNumVertices(), numEdges);
+		for(GraphNode n : vertexMap.values()) {
+			builder.addVertex(n.getPoint());
+			for(GraphEdge e : n.getEdges()) {
+				builder.addEdge(n.getPoint(), e.getTo().getPoint(), e.getWeight());
+			}
 		}
+		return builder.build();
 	}
 	
-	/** Find the path from start to goal using Dijkstra's algorithm
-	 * 
-	 * @param start The starting location
-	 * @param goal The goal location
-	 * @return The list of intersections that form the shortest path from 
-	 *   start to goal (including both start and goal).
+	/**
+	 * Get the compact copy of the graph for the read-only queries. It is
+	 * rebuilt after the changes made through the methods of the CapGraph;
+	 * the changes made through the GraphNodes directly are not seen.
+	 * The copy is shared, so it must not be changed.
+	 * @return The CompactGraph of the current graph.
 	 */
-	public List<Integer> dijkstra(int start, int goal)
-	{
-		setDefaultDistances();
-		
-		HashMap<Integer, Integer> parentMap = new HashMap<Integer, Integer>();
-		
-		boolean found = dijkstraSearch(start, goal, parentMap);
-		
-		if (!found) {
-			System.out.println("No path exists");
-			setMulticlustering(true);
-			return new LinkedList<Integer>();
-		} 
-		// reconstruct the path
-		return constractPath(start, goal, parentMap);
+	private synchronized CompactGraph snapshot() {
+		if (snapshot == null || snapshotModCount != modCount) {
+			snapshot = toCompactGraph();
+			snapshotModCount = modCount;
+		}
+		return snapshot;
 	}
 	
-	private boolean dijkstraSearch(int start, int goal, HashMap<Integer, Integer> parentMap)
-	{
-		HashSet<Integer> visited = new HashSet<Integer>();
-
-	    Comparator<GraphNode> comparator = (o1, o2) -> o1.getDistance().compareTo(o2.getDistance());
-	    
-		PriorityQueue<GraphNode> queue = new PriorityQueue<GraphNode>(getNumVertices(), comparator);
-	
-		GraphNode startNode = this.getVertex(start);
-		startNode.setDistance(0);
-		queue.add(startNode);
-		boolean found = false;
-		while (!queue.isEmpty()) {
-			GraphNode curr = queue.remove();
-			Integer currPoint = curr.getPoint();
-			
-			if (!visited.contains(currPoint)) {
-				visited.add(currPoint);
-				
-				if (curr.equals(this.getVertex(goal))) {
-					found = true;
-					break;
-				}
-				HashSet<Integer> neighbors = curr.getNeighborPoints();
-				for(Integer next: neighbors) {
-					GraphNode nextNode = this.getVertex(next);
-					if (!visited.contains(next)) {
-						Double lweight = curr.getDistance(nextNode);
-
-						if(lweight < nextNode.getDistance()) {
-							nextNode.setDistance(lweight);
+	/**
+	 * Choose how the shortest paths are found.
+	 * @param unweighted true to count the edges by the breadth-first search,
+	 *   false to sum the lengths of the edges by Dijkstra's algorithm, null to
+	 *   count the edges when all edges have the same length.
+	 */
+	public synchronized void setUnweightedPaths(Boolean unweighted) {
+		unweightedPaths = unweighted;
+		paths = null;
+	}
 	
-							parentMap.put(next, currPoint);
-							queue.add(nextNode);
-						}
-					}
+	/**
+	 * Check whether the paths are found by the number of the edges.
+	 * @return True if the breadth-first search is used.
+	 */
+	private boolean isUnweighted() {
+		if (unweightedPaths != null) {
+			return unweightedPaths;
+		}
+		double length = Double.NaN;
+		for (GraphNode n : vertexMap.values()) {
+			for (GraphEdge e : n.getEdges()) {
+				if (Double.isNaN(length)) {
+					length = e.getLength();
+				} else if (e.getLength() != length) {
+					return false;
 				}
 			}
 		}
-		
-		//this.printPoints(visited);
-		return found;
+		return true;
+	}
+	
+	/**
+	 * Get the path queries of the current graph. The lengths of the edges
+	 * are read again only after the graph is changed through the CapGraph.
+	 * @return The PathQuery sharing its graph and lengths with the others.
+	 */
+	private PathQuery currentPaths() {
+		PathQuery p = paths;
+		if (p != null && pathsModCount == modCount) {
+			return p;
+		}
+		synchronized (this) {
+			if (paths == null || pathsModCount != modCount) {
+				CompactGraph g = snapshot();
+				pathsModCount = modCount;
+				paths = new PathQuery(g, isUnweighted() ? null : lengths(g));
+			}
+			return paths;
+		}
+	}
+	
+	/**
+	 * Create the state of the path queries of one thread. The queries of
+	 * different PathQuery objects run at once on the same copy of the graph,
+	 * which is not changed by the changes of the CapGraph made later.
+	 * @return The new PathQuery.
+	 */
+	public PathQuery newPathQuery() {
+		return new PathQuery(currentPaths());
 	}
 	
-	/** Reconstruct the path
+	/** Find the path from start to goal using Dijkstra's algorithm
+	 * or the breadth-first search when the graph is unweighted.
+	 * Any number of threads may find the paths at once while the
+	 * graph is not changed; the state of every query is taken from
+	 * the idle ones or created, so the graph itself is only read.
 	 * 
 	 * @param start The starting location
 	 * @param goal The goal location
-	 * @param parentMap .
-	 * @return The list of vertexes that there are the the shortest path from  
+	 * @return The list of intersections that form the shortest path from 
 	 *   start to goal (including both start and goal).
-	 */	
-	private LinkedList <Integer> constractPath (int start, int goal, HashMap<Integer, Integer> parentMap)
+	 */
+	public List<Integer> dijkstra(int start, int goal)
 	{
-		// reconstruct the path
-		LinkedList<Integer> path = new LinkedList<Integer>();
-		Integer curr = goal;
-		while (!getVertex(curr).equals(getVertex(start))) {
-			path.addFirst(curr);
-			curr = parentMap.get(curr);
-		}
-		path.addFirst(start);
+		PathQuery current = currentPaths();
+		PathQuery query = idleQueries.pollFirst();
+		while (query != null && !query.sharesGraph(current)) {
+			query = idleQueries.pollFirst();
+		}
+		if (query == null) {
+			query = new PathQuery(current);
+		}
+		List<Integer> path;
+		try {
+			path = query.path(start, goal);
+		} finally {
+			idleQueries.offerFirst(query);
+		}
+		if (path.isEmpty()) {
+			System.out.println("No path exists");
+		}
 		return path;
 	}
 	
+	/**
+	 * Copy the lengths of the edges into an array parallel to the targets
+	 * of the compact copy of the graph. Every edge of the copy is looked up
+	 * in its node, so the arrays can't disagree; an edge missing in the
+	 * nodes gets the infinite length and is never on a path.
+	 * @param g the compact copy.
+	 * @return The length of every edge of the copy.
+	 */
+	private double[] lengths(CompactGraph g) {
+		int[] points = g.points();
+		int[] offsets = g.offsets();
+		int[] targets = g.targets();
+		double[] lengths = new double[targets.length];
+		for (int v = 0; v < points.length; v++) {
+			GraphNode n = getVertex(points[v]);
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				GraphEdge edge = n == null ? null : n.getEdge(points[targets[e]]);
+				lengths[e] = edge == null ? Double.POSITIVE_INFINITY : edge.getLength();
+			}
+		}
+		return lengths;
+	}
+	
 	/**
 	 * Print the LinkedList to the screen.
 	 */
@@ -317,90 +452,111 @@ public class CapGraph implements Graph {
 	}
 	
 	/**
-	 * Get all paths of the graph between all pairs of vertexes.
-	 * @return The list of all paths.    
+	 * Get the edges of the graph ordered by their betweenness,
+	 * the number of the shortest paths between all pairs of vertexes
+	 * going through the edge. 
+	 * @return The list of the edges, from the highest betweenness.    
      */	
 	public List<GraphEdge> getStraightPaths() {
-
-		TreeMap<Integer, GraphNode> treeMap = new TreeMap<>(this.vertexMap);
-		Integer max =  treeMap.lastKey();
-		boolean[][] visited = new boolean [max+1][max+1];
-			
-	    Comparator<GraphEdge> comparator = (o1, o2) -> o2.getWeight().compareTo(o1.getWeight());
-	    
-	    List<GraphEdge> queue = new ArrayList<GraphEdge>(getNumEdges());
-		
-	    Iterator<Integer> v = (this.getVertexes()).iterator();
-	    while (v.hasNext()) {
-	    	Integer from = v.next();
-
-		    Iterator<Integer> w = (this.getVertexes()).iterator();
-		    while (w.hasNext()) {
-		    	Integer to = w.next();
-		    	if(from.equals(to) || visited[from][to] || visited[to][from]) {
-		    		continue;
-		    	} else {
-		    		List<Integer> list = dijkstra(from, to);
-		    		System.out.println(list.toString());
-		    		Integer temp = from;
-		    		for (Integer e : list) {
-		    		    if(e.equals(temp)) {
-		    		    	continue;
-		    		    }
-		    		    GraphEdge ed;
-		    		    // we get the edge with increased vertexes
-		    		    if(temp < e) {
-		    		    	ed = this.getVertex(temp).getEdge(e);
-		    		    } else {
-		    		    	ed = this.getVertex(e).getEdge(temp);
-		    		    }
-		    		    // if edge exists
-		    		    if(ed != null) {
-		    		    	if(!queue.contains(ed)) {
-		    		    		ed.setWeight(0);
-		    		    		queue.add(ed);
-		    		    	}
-		    		    	ed.addWeight();
-		    		    } 
-		    		    temp = e;
-		    		}
-
-		    		visited[from][to] = true;
-		    		visited[to][from] = true;
-		    	}
-
-		    }	    	
-	    }
-	    Collections.sort(queue, comparator);
-	    return queue;
+		try (EdgeBetweenness eb = newEdgeBetweenness()) {
+			double[] scores = eb.compute();
+			if (!eb.isConnected()) {
+				setMulticlustering(true);
+			}
+			Integer[] order = new Integer[scores.length];
+			for (int e = 0; e < scores.length; e++) {
+				order[e] = e;
+			}
+			Arrays.sort(order, (e1, e2) -> Double.compare(scores[e2], scores[e1]));
+			return toEdgeList(eb, order);
+		}
 	}
 	
 	/**
-	 * Cut edge.
+	 * Get GraphEdges of the edge indexes, one for every pair of vertexes.
+	 * @param eb the betweenness of the edges.
+	 * @param order the edge indexes. 
+	 * @return The list of the edges from the smaller vertex to the bigger one.    
+     */	
+	private List<GraphEdge> toEdgeList(EdgeBetweenness eb, Integer[] order) {
+		CompactGraph g = eb.getGraph();
+		List<GraphEdge> list = new ArrayList<GraphEdge>();
+		for (int e : order) {
+			int from = g.getPoint(eb.getFrom(e));
+			int to = g.getPoint(eb.getTo(e));
+			if (!eb.isRemoved(e) && from < to) {
+				list.add(this.getVertex(from).getEdge(to));
+			}
+		}
+		return list;
+	}
+	
+	/**
+	 * Cut edge. The edge of the highest betweenness is removed
+	 * and the betweenness is updated for the changed shortest paths 
+	 * until the graph splits. 
 	 * @param int k How many edges do we have to remove? k.
 	 * @param int w This is the min weight of edge to remove.
 	 */	
 	public void cutEdge(int k, int w) {
+		cutEdges(k, 2);
+	}	
+	
+	/**
+	 * Remove the edges of the highest betweenness until the graph
+	 * has the given number of the connected components. 
+	 * @param components the number of the components to get.
+	 * @return The clusters, the sets of the vertexes of every component.
+	 */	
+	public List<HashSet<Integer>> splitIntoComponents(int components) {
+		cutEdges(Integer.MAX_VALUE, components);
+		return this.clusters;
+	}	
+	
+	/**
+	 * Report the clusters found by the last cut of edges.
+	 * @return The sets of the vertexes of every component.
+	 */	
+	public List<HashSet<Integer>> getClusters() {
+		return this.clusters;
+	}
+	
+	/**
+	 * Remove the edges of the highest betweenness one by one. The components 
+	 * are checked by union-find after every removal.
+	 * @param k the max number of the edges to remove.
+	 * @param components the number of the components to stop at.
+	 */	
+	private void cutEdges(int k, int components) {
 		int i = 0;
-		List<GraphEdge> queue = this.getStraightPaths();
-		while (!this.getMulticlustering() && (k > i) && (!queue.isEmpty())) {
-//			if (!queue.isEmpty()) {	
-				GraphEdge curr = queue.remove(0);
-				GraphNode from = curr.getFrom();
-				GraphNode to = curr.getTo();
+		EdgeBetweenness eb = newEdgeBetweenness();
+		CompactGraph g = eb.getGraph();
+		UnionFind uf;
+		try {
+			eb.compute();
+			uf = eb.components();
+			while (uf.getCount() < components && (k > i)) {
+				int e = eb.maxEdge();
+				if (e < 0) {
+					break;
+				}
+				GraphNode from = this.getVertex(g.getPoint(eb.getFrom(e)));
+				GraphNode to = this.getVertex(g.getPoint(eb.getTo(e)));
 				from.removeTwoEdges(to);
 				numEdges--;
 				numEdges--;
-				if(curr.getWeight() < w) {
-//					break;
-				}
-//			}
-			queue = this.getStraightPaths();
-			i++;
+				modCount++;
+				eb.removeAndUpdate(e);
+				uf = eb.components();
+				i++;
+			}
+		} finally {
+			eb.close();
 		}
+		setMulticlustering(uf.getCount() > 1);
+		checkClusters(uf, g);
 		if (this.getMulticlustering()) {
 			System.out.println("There is multiclustering");
-			checkClusters(queue);
 			int j = 0;
 			for(HashSet <Integer> hs: this.clusters) {
 				System.out.println("" + j +" - "+ hs.size()+": "+ hs.toString());
@@ -409,42 +565,19 @@ public class CapGraph implements Graph {
 		}
 	}	
 	
-	private void checkClusters(List<GraphEdge> list) {
+	/**
+	 * Collect the clusters from the components.
+	 * @param uf the components of the dense vertexes.
+	 * @param g the graph of the dense vertexes.
+	 */	
+	private void checkClusters(UnionFind uf, CompactGraph g) {
 		this.clusters = new ArrayList<HashSet<Integer>>();
-		for(GraphEdge e: list) {
-			int start = e.getFrom().getPoint();
-			int goal = e.getTo().getPoint();
-			boolean s = false;
-			int curr = 0;
-			int i = 0;
-			for (HashSet<Integer> c : this.clusters) {
-			    if((c.contains(start) || c.contains(goal) && !s)) {
-			    	c.add(start);
-			    	c.add(goal);			    	
-			    	s = true;
-			    	curr = i;
-			    } else if((c.contains(start) || c.contains(goal) && s))  {
-			    	HashSet<Integer> c0 = this.clusters.get(curr);
-			    	Iterator<Integer> it = c.iterator();
-			    	while (it.hasNext()) {
-			    		Integer k = it.next();
-			    		c0.add(k);
-			    	    it.remove();
-			    	}
-			    }
-			    i++;
-			}	
-			if (!s) {
-				HashSet<Integer> hs = new HashSet<Integer>();
-				hs.add(start);
-				hs.add(goal);
-				this.clusters.add(hs);
-			}
+		int[] label = uf.labels();
+		for (int c = 0; c < uf.getCount(); c++) {
+			this.clusters.add(new HashSet<Integer>());
 		}
-		for(int i = this.clusters.size()-1; i >= 0; i--) {
-			if(this.clusters.get(i).isEmpty()) {
-				this.clusters.remove(i);
-			}
+		for (int v = 0; v < label.length; v++) {
+			this.clusters.get(label[v]).add(g.getPoint(v));
 		}
 	}
 	
@@ -575,33 +708,47 @@ public class CapGraph implements Graph {
 	 * delta is the function δ(u, v) is 1 if u = v and 0 otherwise.
 	 * ci is the community to which vertex i is assigned. 
 	 * cj is the community to which vertex j is assigned. 
+	 * 
+	 * It is computed from the totals of the communities in O(V+E) by Modularity.
 	 */
 	public double modularity() {
-		int m = getNumEdges();		
-		double mod = 0;
-		for(GraphNode i : vertexMap.values()) {
-			for(GraphNode j : vertexMap.values()) {
-				CommunityNode ci = i.getCommunity();
-				CommunityNode cj = j.getCommunity();				
-
-				int ki = i.getVertexDegree();
-				int kj = j.getVertexDegree();
-				double temp = (getAij(i, j) - ki*kj/(2*m)) * getDelta(ci, cj);
-		        //System.out.println("modularity =" + temp + " i=" + i.getPoint() + " j=" + j.getPoint());
-				mod += temp;
+		return modularity(1.0);
+	}
+	
+	/**
+	 * The modularity with the resolution gamma. The bigger gamma is, 
+	 * the smaller the communities of the best partition.
+	 * @param gamma the resolution. 
+	 * @return The modularity.
+	 */
+	public double modularity(double gamma) {
+		CompactGraph g = toCompactGraph();
+		int[] community = new int[g.getNumVertices()];
+		HashMap<CommunityNode, Integer> ids = new HashMap<CommunityNode, Integer>();
+		for(int v = 0; v < community.length; v++) {
+			CommunityNode cn = getVertex(g.getPoint(v)).getCommunity();
+			if(cn == null) {
+				community[v] = -1;
+			} else {
+				Integer id = ids.get(cn);
+				if(id == null) {
+					id = ids.size();
+					ids.put(cn, id);
+				}
+				community[v] = id;
 			}
 		}
-		return mod/(2*m);
+		return Modularity.of(g, Modularity.labels(community), gamma);
 	}
 	
 	public String toString() {
-		String s = "";
+		StringBuilder s = new StringBuilder();
 		int i = 1;
 		for(CommunityNode cn : communitySet) {
-			s += "CN" + i + " " + cn.toString() + "\n";
+			s.append("CN").append(i).append(' ').append(cn.toString()).append('\n');
 			i++;
 		}
-		return s;
+		return s.toString();
 	}
 	
 	public int getAllLinks() {
@@ -644,48 +791,82 @@ public class CapGraph implements Graph {
 			cn.setNodes(nm);
 		}
 		vertexMap = new HashMap<Integer, GraphNode>(vm);
+		modCount++;
 	}
 
+	/**
+	 * Find communities by the Louvain method. The levels are aggregated
+	 * until there are two communities or no vertex moves. The graph 
+	 * is not changed.
+	 * @return The set of the lists of the vertexes of every community.
+	 */
 	public HashSet<List<Integer>> getCommunities() {
-		assignCommunityToEachNode();
-		int k = 2;
-		int size = this.communitySet.size();
-		int i = 1;
-		while(size > k) {
-			while(size > k) {
-				evaluateTheGainOfModularity();
-				int temp = this.communitySet.size();
-				if(temp == size) {
-					break;
-				}
-				size = temp;
-			}
-			double mod = modularity();
-			System.out.println(this.toString());
-			System.out.println("Gain" + i +" size=" + size + " edges=" + getNumEdges() 
-				+ " sum_edges=" + getAllLinks()+ " modularity=" + mod + "\n");
-
-			communityAggregation();
-			
-			mod = modularity();
-			System.out.println(this.toString());
-			System.out.println("Aggr" + i +" size=" + size + " edges=" + getNumEdges() 
-				+ " sum_edges=" + getAllLinks()+ " modularity=" + mod + "\n");
-			i++;
-			if(mod < 0) {
-				break;
-			}
+		CompactGraph g = toCompactGraph();
+		try (Louvain louvain = new Louvain(g)) {
+			louvain.setMinCommunities(2);
+			louvain.setParallelism(communityThreads);
+			louvain.setSeed(communitySeed);
+			return g.toCommunityLists(louvain.run());
 		}
-		HashSet<List<Integer>> path = new HashSet<List<Integer>>();
-		for(CommunityNode cn : communitySet) {
-			List<Integer> a = new ArrayList<Integer>();
-			for(Integer n : cn.getAllNodesSet()) {
-				a.add(n);
-			}
-
-			path.add(a);
+	}
+	
+	/**
+	 * Find communities by the Louvain method as getCommunities does
+	 * and keep the communities of every level.
+	 * @return The Dendrogram of the levels.
+	 */
+	public Dendrogram getDendrogram() {
+		try (Louvain louvain = new Louvain(toCompactGraph())) {
+			louvain.setMinCommunities(2);
+			louvain.setParallelism(communityThreads);
+			louvain.setSeed(communitySeed);
+			louvain.run();
+			return louvain.getDendrogram();
+		}
+	}
+	
+	/**
+	 * Find well connected communities by the Leiden method. The levels are
+	 * aggregated until no vertex moves or the modularity of a level grows
+	 * by less than minImprovement. The graph is not changed.
+	 * @param minImprovement the minimal growth of the modularity of a level.
+	 * @return The set of the lists of the vertexes of every community.
+	 */
+	public HashSet<List<Integer>> getLeidenCommunities(double minImprovement) {
+		CompactGraph g = toCompactGraph();
+		Leiden leiden = new Leiden(g);
+		leiden.setMinImprovement(minImprovement);
+		leiden.setSeed(communitySeed);
+		return g.toCommunityLists(leiden.run());
+	}
+	
+	/**
+	 * Find communities by the label propagation with the threads and
+	 * the seed of setCommunityThreads. The graph is not changed.
+	 * @param maxIterations the most iterations over all vertexes.
+	 * @return The set of the lists of the vertexes of every community.
+	 */
+	public HashSet<List<Integer>> getLabelPropagationCommunities(int maxIterations) {
+		CompactGraph g = toCompactGraph();
+		try (LabelPropagation lp = new LabelPropagation(g)) {
+			lp.setParallelism(communityThreads);
+			lp.setSeed(communitySeed);
+			lp.setMaxIterations(maxIterations);
+			return g.toCommunityLists(lp.run());
+		}
+	}
+	
+	/**
+	 * Find communities by the Louvain method for several resolutions
+	 * at once on one snapshot of the graph. The graph is not changed.
+	 * @param resolutions the resolutions, 1 for the standard modularity.
+	 * @return The partition, its modularity and the number of the communities of every resolution.
+	 */
+	public List<ResolutionSweep.Partition> getCommunities(double... resolutions) {
+		try (ResolutionSweep sweep = new ResolutionSweep(toCompactGraph())) {
+			sweep.setParallelism(communityThreads);
+			return sweep.run(resolutions);
 		}
-		return path;
 	}
 	
 	public static void main(String[] args) {
@@ -696,35 +877,8 @@ public class CapGraph implements Graph {
 		GraphLoader.loadGraph(graph, "data/" + file);
 	    
 		//graph.cutEdge(1, 60000);
-		graph.assignCommunityToEachNode();
-		int k = 2;
-		int size = graph.communitySet.size();
-		int i = 1;
-		while(size > k) {
-			while(size > k) {
-				graph.evaluateTheGainOfModularity();
-				int temp = graph.communitySet.size();
-				if(temp == size) {
-					break;
-				}
-				size = temp;
-			}
-			double mod = graph.modularity();
-			System.out.println(graph.toString());
-			System.out.println("Gain" + i +" size=" + size + " edges=" + graph.getNumEdges() 
-				+ " sum_edges=" + graph.getAllLinks()+ " modularity=" + mod + "\n");
-
-			graph.communityAggregation();
-			
-			mod = graph.modularity();
-			System.out.println(graph.toString());
-			System.out.println("Aggr" + i +" size=" + size + " edges=" + graph.getNumEdges() 
-				+ " sum_edges=" + graph.getAllLinks()+ " modularity=" + mod + "\n");
-			i++;
-			if(mod < 0) {
-				break;
-			}
-		}
+		HashSet<List<Integer>> communities = graph.getCommunities();
+		System.out.println(communities.toString());
 	}
 
 }
@@ -261,27 +261,23 @@ public class CommunityNode {
 	}
 	
 	public String toString() {
-		String s = "C" + getPoint() + " [";
+		StringBuilder s = new StringBuilder("C").append(getPoint()).append(" [");
 		for(Integer g : nodesMap.keySet()) {
-			s += g + " ";
+			s.append(g).append(' ');
 		}
-		s = s.trim() + "]";
-		s += " allnodes=[";
+		GraphNode.trimEnd(s).append("] allnodes=[");
 		for(Integer g : allNodesSet) {
-			s += g + " ";
+			s.append(g).append(' ');
 		}
-		s = s.trim() + "]";
-		s += " in_edges={";
+		GraphNode.trimEnd(s).append("] in_edges={");
 		for(GraphEdge g : internalLinks) {
-			s += "(" + g.getFrom().getPoint() + ", " + g.getTo().getPoint() + ")" + g.getWeight() + " ";
+			s.append('(').append(g.getFrom().getPoint()).append(", ").append(g.getTo().getPoint()).append(')').append(g.getWeight()).append(' ');
 		}
-		s = s.trim() + "}";
-		s += " ex_edges={";
+		GraphNode.trimEnd(s).append("} ex_edges={");
 		for(GraphEdge g : externalLinks) {
-			s += "(" + g.getFrom().getPoint() + ", " + g.getTo().getPoint() + ")" + g.getWeight() + " ";
+			s.append('(').append(g.getFrom().getPoint()).append(", ").append(g.getTo().getPoint()).append(')').append(g.getWeight()).append(' ');
 		}
-		s = s.trim() + "}";
-		s += " in_num=" + getInternalLinksNumber() + " ex_num=" + getExternalLinksNumber();
-		return s;
+		GraphNode.trimEnd(s).append("} in_num=").append(getInternalLinksNumber()).append(" ex_num=").append(getExternalLinksNumber());
+		return s.toString();
 	}
 }
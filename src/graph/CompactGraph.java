@@ -0,0 +1,653 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * Implementation of Graph in a class
+ * named CompactGraph.
+ *
+ * The graph is stored in the compressed sparse row (CSR) format:
+ * the vertices get dense ids 0..n-1 in the ascending order of their
+ * numbers, the edges of vertex v are targets[offsets[v]..offsets[v+1])
+ * sorted by the target id, and weights[] is parallel to targets[].
+ *
+ * The incoming edges are indexed in the same format on the first request
+ * by a counting sort of the edges on the target, so the rows of the
+ * reversed edges are sorted by the source without any comparison sort.
+ *
+ */
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+public class CompactGraph implements Graph {
+
+	private int[] points;
+	private int[] offsets;
+	private int[] targets;
+	private int[] weights;
+	// the edits not applied yet; volatile so a graph built by the first
+	// read is seen whole by the other threads
+	private volatile Builder pending;
+	// the incoming edges, null until requested
+	private int[] rOffsets;
+	private int[] rTargets;
+	private int[] rWeights;
+	// the weights as the lengths for the path queries, null until requested
+	private PathQuery weightedPaths;
+
+	/**
+	 * Create a new empty CompactGraph
+	 */
+	public CompactGraph() {
+		this(new int[0], new int[1], new int[0], new int[0]);
+	}
+
+	/**
+	 * Create a new CompactGraph on the ready arrays. The arrays are not copied.
+	 * @param points the vertex numbers in the ascending order.
+	 * @param offsets the start of the edges of every vertex, of size n+1.
+	 * @param targets the dense ids of the ends of the edges.
+	 * @param weights the weights of the edges.
+	 */
+	CompactGraph(int[] points, int[] offsets, int[] targets, int[] weights) {
+		this.points = points;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+		this.pending = null;
+	}
+
+	/**
+	 * Creates a vertex with the given number.
+	 * The change is applied on the next read of the graph.
+	 * @param num the index of the vertex.
+	 */
+	@Override
+	public void addVertex(int num) {
+		edit().addVertex(num);
+	}
+
+	/**
+	 * Creates an edge from the start vertex to the end.
+	 * The change is applied on the next read of the graph.
+	 * @param from the index of the start point for the edge.
+	 * @param to the index of the end point for the edge.
+	 */
+	@Override
+	public void addEdge(int from, int to) {
+		edit().addEdge(from, to);
+	}
+
+	private synchronized Builder edit() {
+		if(pending == null) {
+			pending = new Builder(this);
+		}
+		return pending;
+	}
+
+	/**
+	 * Apply the pending edits. Only the first reader after the edits builds
+	 * the arrays; the others wait for it and see the whole new graph, so a
+	 * graph filled by addVertex and addEdge can be shared by the threads
+	 * once the edits are done. Edits concurrent with the reads are not allowed.
+	 */
+	private void ensureBuilt() {
+		if(pending == null) {
+			return;
+		}
+		synchronized(this) {
+			Builder b = pending;
+			if(b == null) {
+				return;
+			}
+			CompactGraph g = b.build();
+			points = g.points;
+			offsets = g.offsets;
+			targets = g.targets;
+			weights = g.weights;
+			rOffsets = null;
+			rTargets = null;
+			rWeights = null;
+			weightedPaths = null;
+			// the volatile write publishes the arrays above
+			pending = null;
+		}
+	}
+
+	/**
+	 * Build the index of the incoming edges if it isn't built.
+	 */
+	private synchronized void ensureReverse() {
+		ensureBuilt();
+		if(rOffsets != null) {
+			return;
+		}
+		int n = points.length;
+		int[] ro = new int[n + 1];
+		for(int e = 0; e < targets.length; e++) {
+			ro[targets[e] + 1]++;
+		}
+		for(int v = 0; v < n; v++) {
+			ro[v + 1] += ro[v];
+		}
+		int[] next = Arrays.copyOf(ro, n);
+		int[] rt = new int[targets.length];
+		int[] rw = new int[targets.length];
+		for(int v = 0; v < n; v++) {
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				int pos = next[targets[e]]++;
+				rt[pos] = v;
+				rw[pos] = weights[e];
+			}
+		}
+		rTargets = rt;
+		rWeights = rw;
+		rOffsets = ro;
+	}
+
+	/**
+	 * Report size of vertex set
+	 * @return The number of vertices in the graph.
+	 */
+	public int getNumVertices() {
+		ensureBuilt();
+		return points.length;
+	}
+
+	/**
+	 * Report size of edge set. Every direction of an undirected
+	 * edge is counted separately.
+	 * @return The number of the directed edges in the graph.
+	 */
+	public int getNumEdges() {
+		ensureBuilt();
+		return targets.length;
+	}
+
+	/**
+	 * Get the dense id of the vertex.
+	 * @param point the number of the vertex.
+	 * @return The dense id or -1 if there is no such vertex.
+	 */
+	public int indexOf(int point) {
+		ensureBuilt();
+		int i = Arrays.binarySearch(points, point);
+		return i < 0 ? -1 : i;
+	}
+
+	/**
+	 * Get the number of the vertex.
+	 * @param v the dense id of the vertex.
+	 * @return The number of the vertex.
+	 */
+	public int getPoint(int v) {
+		ensureBuilt();
+		return points[v];
+	}
+
+	/**
+	 * Report out degree of the vertex.
+	 * @param v the dense id of the vertex.
+	 * @return The number of the edges starting at the vertex.
+	 */
+	public int outDegree(int v) {
+		ensureBuilt();
+		return offsets[v + 1] - offsets[v];
+	}
+
+	/**
+	 * Report in degree of the vertex.
+	 * @param v the dense id of the vertex.
+	 * @return The number of the edges ending at the vertex.
+	 */
+	public int inDegree(int v) {
+		ensureReverse();
+		return rOffsets[v + 1] - rOffsets[v];
+	}
+
+	/**
+	 * Get the sources of the edges ending at the vertex in a new array.
+	 * @param v the dense id of the vertex.
+	 * @return The dense ids of the sources in the ascending order.
+	 */
+	public int[] inNeighbors(int v) {
+		ensureReverse();
+		return Arrays.copyOfRange(rTargets, rOffsets[v], rOffsets[v + 1]);
+	}
+
+	/**
+	 * Copy the sources of the edges ending at the vertex into the buffer,
+	 * so a caller visiting many vertices reuses one array.
+	 * @param v the dense id of the vertex.
+	 * @param into the buffer of at least inDegree(v) ints.
+	 * @return The number of the sources written, in the ascending order.
+	 */
+	public int inNeighbors(int v, int[] into) {
+		ensureReverse();
+		int degree = rOffsets[v + 1] - rOffsets[v];
+		System.arraycopy(rTargets, rOffsets[v], into, 0, degree);
+		return degree;
+	}
+
+	/**
+	 * Get the graph with every edge reversed. The view shares the arrays
+	 * with this graph, and reversing it again gives this graph's arrays;
+	 * a change of the view is applied to its own copy.
+	 * @return The reversed graph.
+	 */
+	public CompactGraph reversed() {
+		ensureReverse();
+		CompactGraph r = new CompactGraph(points, rOffsets, rTargets, rWeights);
+		r.rOffsets = offsets;
+		r.rTargets = targets;
+		r.rWeights = weights;
+		return r;
+	}
+
+	/**
+	 * Report the sum of the weights of the edges of the vertex.
+	 * @param v the dense id of the vertex.
+	 * @return The weighted degree of the vertex.
+	 */
+	public long weightedDegree(int v) {
+		ensureBuilt();
+		long k = 0;
+		for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+			k += weights[e];
+		}
+		return k;
+	}
+
+	/**
+	 * Find the connected components, ignoring the direction of the edges.
+	 * @return The components of the dense ids.
+	 */
+	public UnionFind components() {
+		ensureBuilt();
+		UnionFind uf = new UnionFind(points.length);
+		for(int v = 0; v < points.length; v++) {
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				uf.union(v, targets[e]);
+			}
+		}
+		return uf;
+	}
+
+	/* The raw arrays for the algorithms of the package. They are not copied. */
+
+	int[] points() {
+		ensureBuilt();
+		return points;
+	}
+
+	int[] offsets() {
+		ensureBuilt();
+		return offsets;
+	}
+
+	int[] targets() {
+		ensureBuilt();
+		return targets;
+	}
+
+	int[] weights() {
+		ensureBuilt();
+		return weights;
+	}
+
+	int[] reverseOffsets() {
+		ensureReverse();
+		return rOffsets;
+	}
+
+	int[] reverseTargets() {
+		ensureReverse();
+		return rTargets;
+	}
+
+	/**
+	 * Finds the egonet centered at a given node. The egonet is a read-only
+	 * view over this graph, EgonetView.materialize() copies it.
+	 * @param center the number of the center vertex.
+	 * @return The graph on the egonet.
+	 */
+	@Override
+	public Graph getEgonet(int center) {
+		int c = indexOf(center);
+		if(c < 0) {
+			return new CompactGraph();
+		}
+		return new EgonetView(this, c);
+	}
+
+	/**
+	 *  Returns all SCCs in a directed graph by the iterative Tarjan
+	 *  algorithm. Every SCC is a graph of its vertices, like Dfs returns,
+	 *  built on the first access.
+     * @return The list of the graphs of the SCCs.
+     */
+	@Override
+	public List<Graph> getSCCs() {
+		return new StronglyConnected(this).getGraphs();
+	}
+
+    /**
+     * Return the graph's connections in a readable format.
+     * The keys in this HashMap are the vertices in the graph.
+     * The values are the nodes that are reachable via a directed
+     * edge from the corresponding key.
+	 * The returned representation ignores edge weights and
+	 * multi-edges.
+	 * @return The map of graph. The graph's connections in a readable format.
+	 */
+	@Override
+	public HashMap<Integer, HashSet<Integer>> exportGraph() {
+		ensureBuilt();
+		HashMap<Integer, HashSet<Integer>> eg = new HashMap<Integer, HashSet<Integer>>();
+		for(int v = 0; v < points.length; v++) {
+			HashSet<Integer> nbrs = new HashSet<Integer>();
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				nbrs.add(points[targets[e]]);
+			}
+			eg.put(points[v], nbrs);
+		}
+		return eg;
+	}
+
+	/** Find the path from start to goal using Dijkstra's algorithm.
+	 * The weights of the edges are used as their lengths. The lengths
+	 * and the arrays of the search are kept for the next query, so the
+	 * queries are run one at a time; the threads use newPathQuery().
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public synchronized List<Integer> dijkstra(int start, int goal) {
+		List<Integer> path = weightedPaths().path(start, goal);
+		if(path.isEmpty()) {
+			System.out.println("No path exists");
+		}
+		return path;
+	}
+
+	/**
+	 * Create the state of the weighted path queries of one thread. The
+	 * lengths are shared with the other queries of this graph.
+	 * @return The new PathQuery.
+	 */
+	public PathQuery newPathQuery() {
+		return new PathQuery(weightedPaths());
+	}
+
+	/**
+	 * Get the path queries with the weights as the lengths, copying
+	 * the weights at the first query after a change of the graph.
+	 * @return The PathQuery of the graph.
+	 */
+	private synchronized PathQuery weightedPaths() {
+		ensureBuilt();
+		if(weightedPaths == null) {
+			double[] lengths = new double[targets.length];
+			for(int e = 0; e < lengths.length; e++) {
+				lengths[e] = weights[e];
+			}
+			weightedPaths = new PathQuery(this, lengths);
+		}
+		return weightedPaths;
+	}
+
+	/**
+	 * Find communities by the Louvain method.
+	 * @return The set of the lists of the vertices of every community.
+	 */
+	public HashSet<List<Integer>> getCommunities() {
+		return toCommunityLists(new Louvain(this).run());
+	}
+
+	/**
+	 * Collect the numbers of the vertices of every community.
+	 * @param community the community of every dense vertex, 0..count-1.
+	 * @return The set of the lists of the vertices of every community.
+	 */
+	HashSet<List<Integer>> toCommunityLists(int[] community) {
+		ensureBuilt();
+		List<List<Integer>> lists = new ArrayList<List<Integer>>();
+		for(int v = 0; v < community.length; v++) {
+			while(lists.size() <= community[v]) {
+				lists.add(new ArrayList<Integer>());
+			}
+			lists.get(community[v]).add(points[v]);
+		}
+		return new HashSet<List<Integer>>(lists);
+	}
+
+	/**
+	 * Copy the graph into a CapGraph.
+	 * @return The CapGraph with the same vertices, edges and weights.
+	 */
+	public CapGraph toCapGraph() {
+		ensureBuilt();
+		CapGraph g = new CapGraph();
+		for(int v = 0; v < points.length; v++) {
+			g.addVertex(points[v]);
+		}
+		for(int v = 0; v < points.length; v++) {
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				g.addEdge(points[v], points[targets[e]]);
+				g.getVertex(points[v]).getEdge(points[targets[e]]).setWeight(weights[e]);
+			}
+		}
+		return g;
+	}
+
+	/**
+	 * The builder of the CompactGraph. It collects vertices and edges
+	 * in the growing primitive arrays and sorts them into the CSR arrays
+	 * on build(). The parallel edges are merged, summing their weights.
+	 */
+	public static class Builder {
+		private int[] vertices;
+		private int numVertices;
+		private int[] from;
+		private int[] to;
+		private int[] weight;
+		private int numEdges;
+
+		/**
+		 * Create a new empty Builder
+		 */
+		public Builder() {
+			this(16, 16);
+		}
+
+		/**
+		 * Create a new empty Builder
+		 * @param expectedVertices the expected number of vertices.
+		 * @param expectedEdges the expected number of edges.
+		 */
+		public Builder(int expectedVertices, int expectedEdges) {
+			vertices = new int[Math.max(expectedVertices, 1)];
+			from = new int[Math.max(expectedEdges, 1)];
+			to = new int[from.length];
+			weight = new int[from.length];
+		}
+
+		/**
+		 * Create a new Builder with the contents of the graph.
+		 * @param g the graph to copy.
+		 */
+		public Builder(CompactGraph g) {
+			this(g.points.length, g.targets.length);
+			for(int v = 0; v < g.points.length; v++) {
+				addVertex(g.points[v]);
+				for(int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+					addEdge(g.points[v], g.points[g.targets[e]], g.weights[e]);
+				}
+			}
+		}
+
+		/**
+		 * Creates a vertex with the given number.
+		 * @param num the index of the vertex.
+		 */
+		public void addVertex(int num) {
+			if(numVertices == vertices.length) {
+				vertices = Arrays.copyOf(vertices, 2 * numVertices);
+			}
+			vertices[numVertices++] = num;
+		}
+
+		/**
+		 * Creates an edge of the weight 1 from the start vertex to the end.
+		 * @param from the index of the start point for the edge.
+		 * @param to the index of the end point for the edge.
+		 */
+		public void addEdge(int from, int to) {
+			addEdge(from, to, 1);
+		}
+
+		/**
+		 * Creates an edge from the start vertex to the end. The parallel
+		 * edges are merged by summing the weights, so a negative weight
+		 * removes an edge: a merged edge with a negative part is dropped
+		 * if its weight is 0 or less. Other edges are kept whatever
+		 * their weight.
+		 * @param f the index of the start point for the edge.
+		 * @param t the index of the end point for the edge.
+		 * @param w the weight of the edge.
+		 */
+		public void addEdge(int f, int t, int w) {
+			if(numEdges == from.length) {
+				from = Arrays.copyOf(from, 2 * numEdges);
+				to = Arrays.copyOf(to, 2 * numEdges);
+				weight = Arrays.copyOf(weight, 2 * numEdges);
+			}
+			from[numEdges] = f;
+			to[numEdges] = t;
+			weight[numEdges] = w;
+			numEdges++;
+		}
+
+		/**
+		 * Creates the edges of the weight 1 at once.
+		 * @param pairs the pairs from0, to0, from1, to1, ... of the edges.
+		 * @param count the number of the edges to add.
+		 */
+		public void addEdges(int[] pairs, int count) {
+			if(numEdges + count > from.length) {
+				int capacity = Math.max(numEdges + count, 2 * from.length);
+				from = Arrays.copyOf(from, capacity);
+				to = Arrays.copyOf(to, capacity);
+				weight = Arrays.copyOf(weight, capacity);
+			}
+			for(int i = 0; i < count; i++) {
+				from[numEdges] = pairs[2 * i];
+				to[numEdges] = pairs[2 * i + 1];
+				weight[numEdges] = 1;
+				numEdges++;
+			}
+		}
+
+		/**
+		 * Build the graph.
+		 * @return The CompactGraph with the collected vertices and edges.
+		 */
+		public CompactGraph build() {
+			// the vertices are all added vertices and the ends of the edges
+			int[] all = new int[numVertices + 2 * numEdges];
+			System.arraycopy(vertices, 0, all, 0, numVertices);
+			System.arraycopy(from, 0, all, numVertices, numEdges);
+			System.arraycopy(to, 0, all, numVertices + numEdges, numEdges);
+			Arrays.sort(all);
+			int n = 0;
+			for(int i = 0; i < all.length; i++) {
+				if(n == 0 || all[i] != all[n - 1]) {
+					all[n++] = all[i];
+				}
+			}
+			int[] points = Arrays.copyOf(all, n);
+
+			int[] src = new int[numEdges];
+			int[] dst = new int[numEdges];
+			for(int i = 0; i < numEdges; i++) {
+				src[i] = Arrays.binarySearch(points, from[i]);
+				dst[i] = Arrays.binarySearch(points, to[i]);
+			}
+
+			// the counting sort on the target and then the stable one
+			// on the source gives the rows sorted by the target
+			int[] byTarget = countingSort(dst, null, n);
+			int[] order = countingSort(src, byTarget, n);
+
+			int[] offsets = new int[n + 1];
+			int[] targets = new int[numEdges];
+			int[] weights = new int[numEdges];
+			// the merged edges with a negative part
+			boolean[] cancelled = new boolean[numEdges];
+			int m = 0;
+			int row = 0;
+			for(int i = 0; i < numEdges; i++) {
+				int e = order[i];
+				while(row < src[e]) {
+					offsets[++row] = m;
+				}
+				if(m > offsets[row] && targets[m - 1] == dst[e]) {
+					weights[m - 1] += weight[e];
+				} else {
+					targets[m] = dst[e];
+					weights[m] = weight[e];
+					m++;
+				}
+				cancelled[m - 1] |= weight[e] < 0;
+			}
+			while(row < n) {
+				offsets[++row] = m;
+			}
+
+			// drop the edges removed by the negative weights
+			int kept = 0;
+			for(int v = 0; v < n; v++) {
+				int start = offsets[v];
+				offsets[v] = kept;
+				for(int e = start; e < offsets[v + 1]; e++) {
+					if(!cancelled[e] || weights[e] > 0) {
+						targets[kept] = targets[e];
+						weights[kept] = weights[e];
+						kept++;
+					}
+				}
+			}
+			offsets[n] = kept;
+			m = kept;
+			return new CompactGraph(points, offsets, Arrays.copyOf(targets, m), Arrays.copyOf(weights, m));
+		}
+
+		/**
+		 * Stable counting sort of the edge indexes on the key.
+		 * @param key the key of every edge.
+		 * @param input the order of the edges to sort or null for the natural order.
+		 * @param n the number of the keys.
+		 * @return The sorted edge indexes.
+		 */
+		private static int[] countingSort(int[] key, int[] input, int n) {
+			int[] count = new int[n + 1];
+			for(int i = 0; i < key.length; i++) {
+				count[key[i] + 1]++;
+			}
+			for(int v = 0; v < n; v++) {
+				count[v + 1] += count[v];
+			}
+			int[] out = new int[key.length];
+			for(int i = 0; i < key.length; i++) {
+				int e = input == null ? i : input[i];
+				out[count[key[e]]++] = e;
+			}
+			return out;
+		}
+	}
+}
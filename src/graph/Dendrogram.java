@@ -0,0 +1,273 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * The hierarchy of the communities of all levels of a Louvain run.
+ *
+ * Every level L keeps in one int array:
+ * - the parent of every community of the level L-1 (of every vertex for L = 0),
+ * - the community of every vertex of the graph at the level L,
+ * - the vertices sorted by the community with the offsets of every community,
+ * so the community of a vertex is found in O(1) and the members of a
+ * community in O(size).
+ *
+ * The file is the same ints after the header: the magic number, the number
+ * of the vertices n, the number of the levels and the n vertex numbers.
+ * A loaded file is memory-mapped and read in place.
+ *
+ */
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public class Dendrogram {
+	private static final int MAGIC = 0x444E4452;
+	private static final int HEADER = 3;
+
+	private final IntBuffer data;
+	private final int n;
+	private final int levels;
+	// the position of the count of the communities of every level in data
+	private final int[] levelStart;
+
+	/**
+	 * Create the dendrogram of the levels.
+	 * @param points the vertex numbers of the dense vertices.
+	 * @param parents the community at the next level of every vertex of every level.
+	 */
+	Dendrogram(int[] points, List<int[]> parents) {
+		this(IntBuffer.wrap(encode(points, parents)));
+	}
+
+	/**
+	 * Create the dendrogram on the encoded ints.
+	 * @param data the ints in the format of the file.
+	 */
+	private Dendrogram(IntBuffer data) {
+		if(data.limit() < HEADER || data.get(0) != MAGIC) {
+			throw new IllegalArgumentException("Not a dendrogram");
+		}
+		this.data = data;
+		this.n = data.get(1);
+		this.levels = data.get(2);
+		if(n < 0 || levels < 0 || levels > data.limit()) {
+			throw new IllegalArgumentException("The dendrogram is corrupt");
+		}
+		this.levelStart = new int[levels];
+		long pos = HEADER + (long) n;
+		int previous = n;
+		for(int l = 0; l < levels; l++) {
+			if(pos >= data.limit()) {
+				throw new IllegalArgumentException("The dendrogram is truncated");
+			}
+			levelStart[l] = (int) pos;
+			int count = data.get((int) pos);
+			if(count < 0) {
+				throw new IllegalArgumentException("The dendrogram is corrupt");
+			}
+			pos += 1L + previous + n + count + 1 + n;
+			previous = count;
+		}
+		if(pos != data.limit()) {
+			throw new IllegalArgumentException("The dendrogram is truncated");
+		}
+	}
+
+	/**
+	 * Load the dendrogram file by mapping it into the memory.
+	 * @param filename the name of the file.
+	 * @return The Dendrogram reading the file in place.
+	 * @throws IOException if the file can't be read.
+	 */
+	public static Dendrogram map(String filename) throws IOException {
+		try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new Dendrogram(bytes.asIntBuffer());
+		}
+	}
+
+	/**
+	 * Write the dendrogram into the file.
+	 * @param filename the name of the file.
+	 * @throws IOException if the file can't be written.
+	 */
+	public void write(String filename) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(4 * data.limit());
+		bytes.asIntBuffer().put(data.duplicate().rewind());
+		try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while(bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+		}
+	}
+
+	/**
+	 * Report the number of the levels.
+	 * @return The number of the levels.
+	 */
+	public int getLevels() {
+		return levels;
+	}
+
+	/**
+	 * Report the number of the vertices.
+	 * @return The number of the vertices.
+	 */
+	public int getNumVertices() {
+		return n;
+	}
+
+	/**
+	 * Get the vertex number of a dense vertex.
+	 * @param v the dense vertex 0..n-1.
+	 * @return The vertex number.
+	 */
+	public int getPoint(int v) {
+		return data.get(HEADER + v);
+	}
+
+	/**
+	 * Find the dense vertex of a vertex number.
+	 * @param point the vertex number.
+	 * @return The dense vertex or -1 if there is no such vertex.
+	 */
+	public int indexOf(int point) {
+		int lo = 0;
+		int hi = n - 1;
+		while(lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int p = getPoint(mid);
+			if(p < point) {
+				lo = mid + 1;
+			} else if(p > point) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Report the number of the communities of a level.
+	 * @param level the level.
+	 * @return The number of the communities.
+	 */
+	public int getCount(int level) {
+		return data.get(levelStart[level]);
+	}
+
+	/**
+	 * Get the community of the next level of a community.
+	 * @param level the level of the parent, 0 for the communities of the vertices.
+	 * @param c the community of the level-1 or the dense vertex for the level 0.
+	 * @return The community of the level.
+	 */
+	public int getParent(int level, int c) {
+		return data.get(levelStart[level] + 1 + c);
+	}
+
+	/**
+	 * Get the community of a vertex at a level.
+	 * @param level the level.
+	 * @param v the dense vertex.
+	 * @return The community of the level.
+	 */
+	public int getCommunity(int level, int v) {
+		return data.get(membershipStart(level) + v);
+	}
+
+	/**
+	 * Get the members of a community at a level.
+	 * @param level the level.
+	 * @param c the community of the level.
+	 * @return The vertex numbers of the members.
+	 */
+	public int[] getMembers(int level, int c) {
+		int offsets = membershipStart(level) + n;
+		int members = offsets + getCount(level) + 1;
+		int from = data.get(offsets + c);
+		int to = data.get(offsets + c + 1);
+		int[] points = new int[to - from];
+		for(int i = from; i < to; i++) {
+			points[i - from] = getPoint(data.get(members + i));
+		}
+		return points;
+	}
+
+	/**
+	 * The position of the communities of the vertices of a level.
+	 * @param level the level.
+	 * @return The position in data.
+	 */
+	private int membershipStart(int level) {
+		int previous = level == 0 ? n : getCount(level - 1);
+		return levelStart[level] + 1 + previous;
+	}
+
+	/**
+	 * Encode the levels in the format of the file.
+	 * @param points the vertex numbers of the dense vertices.
+	 * @param parents the community at the next level of every vertex of every level.
+	 * @return The ints.
+	 */
+	private static int[] encode(int[] points, List<int[]> parents) {
+		int n = points.length;
+		int[] counts = new int[parents.size()];
+		int size = HEADER + n;
+		int previous = n;
+		for(int l = 0; l < counts.length; l++) {
+			for(int c : parents.get(l)) {
+				counts[l] = Math.max(counts[l], c + 1);
+			}
+			size += 1 + previous + n + counts[l] + 1 + n;
+			previous = counts[l];
+		}
+		int[] data = new int[size];
+		data[0] = MAGIC;
+		data[1] = n;
+		data[2] = counts.length;
+		System.arraycopy(points, 0, data, HEADER, n);
+
+		int pos = HEADER + n;
+		int[] membership = new int[n];
+		for(int v = 0; v < n; v++) {
+			membership[v] = v;
+		}
+		for(int l = 0; l < counts.length; l++) {
+			int[] parent = parents.get(l);
+			int count = counts[l];
+			data[pos++] = count;
+			System.arraycopy(parent, 0, data, pos, parent.length);
+			pos += parent.length;
+			for(int v = 0; v < n; v++) {
+				membership[v] = parent[membership[v]];
+			}
+			System.arraycopy(membership, 0, data, pos, n);
+			pos += n;
+
+			// the counting sort of the vertices by the community
+			int offsets = pos;
+			for(int v = 0; v < n; v++) {
+				data[offsets + membership[v] + 1]++;
+			}
+			for(int c = 0; c < count; c++) {
+				data[offsets + c + 1] += data[offsets + c];
+			}
+			pos += count + 1;
+			int[] next = new int[count];
+			for(int v = 0; v < n; v++) {
+				int c = membership[v];
+				data[pos + data[offsets + c] + next[c]++] = v;
+			}
+			pos += n;
+		}
+		return data;
+	}
+}
@@ -71,44 +71,39 @@ public class Dfs {
 	}
 	
 	/**
-	 * Returns transposed graph.  
+	 * Returns transposed graph. It is a full copy: a new CapGraph with
+	 * its own nodes and edges built from the reversed compact copy of
+	 * the graph. The searches over the reversed edges read
+	 * transpose(CompactGraph) or CompactGraph.reversed() instead.
 	 * @param currect graph.
      * @return The transposed graph. 
+     * @deprecated Copies the graph twice, use transpose(CompactGraph).
      */	
+	@Deprecated
 	public CapGraph transpose(CapGraph in) {
-		CapGraph out = new CapGraph();
-		
-	    Iterator<Integer> v = (in.getVertexes()).iterator();
-	    while (v.hasNext()) {
-	    	Integer next = v.next();
-	    	out.addVertex(next);
-	    	GraphNode startIn = in.getVertex(next);
-	    	GraphNode startOut = out.getVertex(next);
-		    Iterator<Integer> e = (startIn.getNeighborPoints()).iterator();
-		    while (e.hasNext()) {
-		    	Integer to = e.next();
-		    	out.addVertex(to);
-				GraphNode endOut = out.getVertex(to);
-				endOut.addEdge(startOut);
-		    }	    	
-	    }
-		return out;
+		return in.toCompactGraph().reversed().toCapGraph();
+	}
+	
+	/**
+	 * Returns transposed graph as the reversed view of the compact graph,
+	 * which shares its arrays and copies nothing.
+	 * @param currect graph.
+     * @return The transposed graph. 
+     */	
+	public CompactGraph transpose(CompactGraph in) {
+		return in.reversed();
 	}
 	
 	/**
 	 *  Returns all SCCs in a directed graph. Recall that the warm up
      * assignment assumes all Graphs are directed, and we will only 
-     * test on directed graphs.
+     * test on directed graphs. The recursive search above overflows
+     * the stack on big graphs, so the SCCs are found by the iterative
+     * Tarjan algorithm on the compact copy of the graph. The list is
+     * read-only and separate from the SCCs of deepFirstSearch.
      * @return The list of the graphs of the SCCs. 
      */
 	public List<Graph> getSCCs(CapGraph in) {
-		Stack<Integer> vertices = new Stack<Integer>();
-		vertices.addAll(in.getVertexes());
-		
-		vertices = deepFirstSearch(in, vertices, false);
-		CapGraph out = transpose(in);
-		vertices = deepFirstSearch(out, vertices, true);
-		
-		return this.scc;
+		return new StronglyConnected(in.toCompactGraph()).getGraphs();
 	}
 }
@@ -0,0 +1,148 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * The shortest paths by the sum of the lengths of the edges in a
+ * CompactGraph by Dijkstra's algorithm in O((V+E) log V).
+ *
+ * The lengths are parallel to the targets of the graph. The vertices
+ * to visit are kept in an IndexedHeap, so every vertex is in the heap
+ * at most once and its distance is decreased in place. The distances,
+ * the parents and the heap are kept for the next search, and only the
+ * vertices reached by the last search are cleared, so a query allocates
+ * nothing but its path.
+ *
+ */
+package graph;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+public class Dijkstra {
+	private final CompactGraph graph;
+	private final double[] lengths;
+	private double[] dist;
+	private int[] parent;
+	private boolean[] settled;
+	private IndexedHeap heap;
+	// the vertices reached by the last search, to clear them for the next one
+	private int[] reached;
+	private int reachedCount;
+
+	/**
+	 * Create a new Dijkstra for the graph.
+	 * @param g the graph.
+	 * @param lengths the non-negative length of every edge, parallel to the targets.
+	 */
+	public Dijkstra(CompactGraph g, double[] lengths) {
+		if(lengths.length != g.getNumEdges()) {
+			throw new IllegalArgumentException("The lengths don't match the edges: " + lengths.length);
+		}
+		this.graph = g;
+		this.lengths = lengths;
+		this.dist = null;
+		this.reachedCount = 0;
+	}
+
+	/**
+	 * Get the graph of the search.
+	 * @return The graph.
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Find the distances from the vertex to all vertices.
+	 * @param start the dense id of the start.
+	 * @return The distance to every dense vertex, infinity if it isn't reached.
+	 */
+	public double[] run(int start) {
+		search(start, -1);
+		return Arrays.copyOf(dist, dist.length);
+	}
+
+	/**
+	 * Find a shortest path between two vertices. The search
+	 * stops when the goal is taken from the heap.
+	 * @param start the number of the start vertex.
+	 * @param goal the number of the goal vertex.
+	 * @return The numbers of the vertices of the path from start to goal
+	 *   including both, an empty list if there is no path.
+	 */
+	public List<Integer> path(int start, int goal) {
+		int s = graph.indexOf(start);
+		int g = graph.indexOf(goal);
+		LinkedList<Integer> path = new LinkedList<Integer>();
+		if(s < 0 || g < 0) {
+			return path;
+		}
+		search(s, g);
+		if(!settled[g]) {
+			return path;
+		}
+		int[] points = graph.points();
+		for(int v = g; v >= 0; v = parent[v]) {
+			path.addFirst(points[v]);
+		}
+		return path;
+	}
+
+	/**
+	 * Allocate the arrays at the first search or clear the vertices
+	 * reached by the last one.
+	 */
+	private void reset() {
+		if(dist == null) {
+			int n = graph.getNumVertices();
+			dist = new double[n];
+			parent = new int[n];
+			settled = new boolean[n];
+			heap = new IndexedHeap(n);
+			reached = new int[n];
+			Arrays.fill(dist, Double.POSITIVE_INFINITY);
+			Arrays.fill(parent, -1);
+		}
+		for(int i = 0; i < reachedCount; i++) {
+			int v = reached[i];
+			dist[v] = Double.POSITIVE_INFINITY;
+			parent[v] = -1;
+			settled[v] = false;
+		}
+		reachedCount = 0;
+		heap.clear();
+	}
+
+	/**
+	 * Settle the vertices in the order of the distance.
+	 * @param s the dense id of the start.
+	 * @param g the dense id of the goal, -1 to settle all vertices.
+	 */
+	private void search(int s, int g) {
+		reset();
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		dist[s] = 0;
+		reached[reachedCount++] = s;
+		heap.push(s, 0);
+		while(!heap.isEmpty()) {
+			int v = heap.poll();
+			settled[v] = true;
+			if(v == g) {
+				break;
+			}
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				int t = targets[e];
+				double d = dist[v] + lengths[e];
+				if(!settled[t] && d < dist[t]) {
+					if(dist[t] == Double.POSITIVE_INFINITY) {
+						reached[reachedCount++] = t;
+					}
+					dist[t] = d;
+					parent[t] = v;
+					heap.push(t, d);
+				}
+			}
+		}
+	}
+}
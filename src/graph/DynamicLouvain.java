@@ -0,0 +1,201 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * The Louvain method for a graph changed by batches of edges.
+ *
+ * An update starts the local moving from the previous communities and
+ * visits only the ends of the changed edges and their neighbors; a moved
+ * vertex queues its neighbors as in the Leiden fast local moving. The
+ * communities are then aggregated and the upper levels are found by the
+ * usual Louvain method on the much smaller graph of the communities.
+ *
+ * The warm start can drift from what a run from the single vertices
+ * would find. By default every update also runs the Louvain method from
+ * the single vertices on the updated graph, and takes its communities if
+ * the modularity of the warm ones is more than the tolerance below theirs,
+ * so every update matches a cold run within the tolerance. A bigger check
+ * interval trades this for speed: the tolerance then applies only to the
+ * checked updates.
+ *
+ */
+package graph;
+
+public class DynamicLouvain {
+	private CompactGraph graph;
+	private double gamma;
+	private double tolerance;
+	private int[] membership;
+	private double modularity;
+	private int checkInterval;
+	private int sinceCheck;
+	private int coldRuns;
+
+	/**
+	 * Create a new DynamicLouvain and find the communities of the graph.
+	 * @param g the graph with both directions of every edge.
+	 */
+	public DynamicLouvain(CompactGraph g) {
+		this(g, 1.0);
+	}
+
+	/**
+	 * Create a new DynamicLouvain and find the communities of the graph.
+	 * @param g the graph with both directions of every edge.
+	 * @param resolution the resolution of the modularity.
+	 */
+	public DynamicLouvain(CompactGraph g, double resolution) {
+		this.graph = g;
+		this.gamma = resolution;
+		this.tolerance = 0.01;
+		this.checkInterval = 1;
+		this.sinceCheck = 0;
+		this.coldRuns = 0;
+		this.membership = null;
+		coldRun();
+	}
+
+	/**
+	 * Set the allowed loss of the modularity against a cold run on the same graph.
+	 * It applies to the updates checked by the check interval.
+	 * @param t the tolerance.
+	 */
+	public void setTolerance(double t) {
+		tolerance = t;
+	}
+
+	/**
+	 * Set how often the warm communities are checked against a cold run.
+	 * @param updates the number of the updates between the checks, 1 (the default) to check every update.
+	 */
+	public void setCheckInterval(int updates) {
+		if(updates < 1) {
+			throw new IllegalArgumentException("The check interval must be positive: " + updates);
+		}
+		checkInterval = updates;
+	}
+
+	/**
+	 * Apply a batch of changes and update the communities.
+	 * @param inserted the pairs from0, to0, from1, to1, ... of the new undirected edges.
+	 * @param deleted the pairs of the removed undirected edges.
+	 * @return The community of every dense vertex of the new graph.
+	 */
+	public int[] update(int[] inserted, int[] deleted) {
+		CompactGraph old = graph;
+		CompactGraph.Builder builder = new CompactGraph.Builder(old);
+		for(int i = 0; i + 1 < inserted.length; i += 2) {
+			builder.addEdge(inserted[i], inserted[i + 1], 1);
+			builder.addEdge(inserted[i + 1], inserted[i], 1);
+		}
+		for(int i = 0; i + 1 < deleted.length; i += 2) {
+			builder.addEdge(deleted[i], deleted[i + 1], -1);
+			builder.addEdge(deleted[i + 1], deleted[i], -1);
+		}
+		graph = builder.build();
+		int n = graph.getNumVertices();
+
+		// the old communities, the new vertices are single
+		int count = 0;
+		for(int c : membership) {
+			count = Math.max(count, c + 1);
+		}
+		int[] initial = new int[n];
+		for(int v = 0; v < n; v++) {
+			int o = old.indexOf(graph.getPoint(v));
+			initial[v] = o >= 0 ? membership[o] : count++;
+		}
+
+		int[] community = new int[n];
+		Louvain.Level l = new Louvain.Level(graph, community);
+		l.assign(initial);
+		// the ends of the changed edges and their neighbors
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		int[] queue = new int[n];
+		boolean[] queued = new boolean[n];
+		int queueSize = 0;
+		for(int[] pairs : new int[][] {inserted, deleted}) {
+			for(int point : pairs) {
+				int v = graph.indexOf(point);
+				if(v < 0) {
+					continue;
+				}
+				if(!queued[v]) {
+					queued[v] = true;
+					queue[queueSize++] = v;
+				}
+				for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+					int t = targets[e];
+					if(!queued[t]) {
+						queued[t] = true;
+						queue[queueSize++] = t;
+					}
+				}
+			}
+		}
+		Louvain.moveNodesQueued(l, gamma, queue, queueSize);
+
+		count = Louvain.renumber(community);
+		Louvain upper = new Louvain(Louvain.aggregate(graph, community, count));
+		upper.setResolution(gamma);
+		int[] top = upper.run();
+		membership = new int[n];
+		for(int v = 0; v < n; v++) {
+			membership[v] = top[community[v]];
+		}
+		modularity = Modularity.of(graph, membership, gamma);
+		if(++sinceCheck >= checkInterval) {
+			sinceCheck = 0;
+			coldRun();
+		}
+		return membership;
+	}
+
+	/**
+	 * Get the current graph.
+	 * @return The graph with all applied changes.
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Get the current communities.
+	 * @return The community of every dense vertex of the current graph.
+	 */
+	public int[] getMembership() {
+		return membership;
+	}
+
+	/**
+	 * Report the modularity of the current communities.
+	 * @return The modularity.
+	 */
+	public double getModularity() {
+		return modularity;
+	}
+
+	/**
+	 * Report how many times the communities were found from scratch.
+	 * @return The number of the cold runs including the first one and the checks.
+	 */
+	public int getColdRuns() {
+		return coldRuns;
+	}
+
+	/**
+	 * Find the communities of the current graph from the single vertices
+	 * and take them if the current ones are worse by more than the tolerance.
+	 */
+	private void coldRun() {
+		Louvain louvain = new Louvain(graph);
+		louvain.setResolution(gamma);
+		int[] cold = louvain.run();
+		double coldModularity = louvain.getModularity();
+		coldRuns++;
+		if(membership == null || modularity < coldModularity - tolerance) {
+			membership = cold;
+			modularity = coldModularity;
+		}
+	}
+}
@@ -0,0 +1,580 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * Edge betweenness of a CompactGraph by the Brandes algorithm:
+ * one BFS per source counts the shortest paths to every vertex and
+ * the dependencies are accumulated back along the BFS order, which
+ * takes O(V*E) for all edges instead of a search per pair of vertices.
+ *
+ * The scores are indexed by the edge index of the CompactGraph. Both
+ * directions of an undirected edge get the same score, the number of
+ * the shortest paths between pairs of vertices going through the edge.
+ *
+ * With the parallelism above one the sources are shared between the
+ * workers of a ForkJoinPool. Every worker has its own scratch arrays
+ * and partial scores, which are summed at the end, so the graph is
+ * only read. The pool is created by setParallelism and serves every
+ * computation and update until close().
+ *
+ * With sampling only k random sources are searched and the scores are
+ * scaled by n/k. For k >= ln(2m/delta)/(2*epsilon^2) the Hoeffding bound
+ * gives that every score is within epsilon*n*(n-1)/2, epsilon times the
+ * number of pairs of vertices, of the exact one with the probability
+ * at least 1-delta. The random generator is seeded, so the same graph
+ * always gets the same sources.
+ *
+ * After removing an edge (u, v) the scores can be updated incrementally.
+ * The edge is in the shortest path DAG of the source s exactly when
+ * d(s, u) != d(s, v), and in an undirected graph d(s, u) = d(u, s), so two
+ * BFS from u and v find the sources whose dependencies may change. Only
+ * their old dependencies are subtracted and the new ones added; the sources
+ * of the other components are never reached by these BFS.
+ *
+ */
+package graph;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EdgeBetweenness implements AutoCloseable {
+	private final CompactGraph graph;
+	private final int[] offsets;
+	private final int[] targets;
+	private final int[] twin;
+	private final boolean[] removed;
+	private double[] scores;
+	private boolean connected;
+	private int parallelism;
+	// the threads of the parallel steps, null for the sequential ones
+	private ForkJoinPool pool;
+	private int samples;
+	private long seed;
+	private int[] sources;
+	private int[] distU;
+	private int[] distV;
+
+	/**
+	 * Create a new EdgeBetweenness for the graph.
+	 * @param g the graph. It is not changed, the removed edges are kept here.
+	 */
+	public EdgeBetweenness(CompactGraph g) {
+		this.graph = g;
+		this.offsets = g.offsets();
+		this.targets = g.targets();
+		this.removed = new boolean[targets.length];
+		this.twin = new int[targets.length];
+		this.scores = new double[targets.length];
+		this.connected = true;
+		this.parallelism = 1;
+		this.pool = null;
+		this.samples = 0;
+		this.seed = 0;
+		// find the reverse direction of every edge in the sorted rows
+		for(int v = 0; v < offsets.length - 1; v++) {
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				int t = targets[e];
+				int r = Arrays.binarySearch(targets, offsets[t], offsets[t + 1], v);
+				twin[e] = (r >= 0 && t != v) ? r : -1;
+			}
+		}
+	}
+
+	/**
+	 * Get the graph.
+	 * @return The graph of the scores.
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Set the number of the threads of the computation.
+	 * @param threads the number of the threads, 1 for the sequential computation.
+	 */
+	public void setParallelism(int threads) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+		}
+		if(threads == parallelism) {
+			return;
+		}
+		close();
+		parallelism = threads;
+		if(threads > 1) {
+			pool = new ForkJoinPool(threads);
+		}
+	}
+
+	/**
+	 * Stop the threads. A later parallel step runs in a new pool.
+	 */
+	@Override
+	public void close() {
+		if(pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Get the number of the threads of the computation.
+	 * @return The number of the threads.
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Search only from the given number of random sources.
+	 * @param k the number of the sources, 0 for the exact computation.
+	 * @param randomSeed the seed of the choice of the sources.
+	 */
+	public void setSampling(int k, long randomSeed) {
+		if(k < 0) {
+			throw new IllegalArgumentException("The number of samples must not be negative: " + k);
+		}
+		samples = k;
+		seed = randomSeed;
+	}
+
+	/**
+	 * Search from enough random sources for the (epsilon, delta) guarantee.
+	 * @param epsilon the allowed error as the part of the number of pairs of vertices.
+	 * @param delta the allowed probability of the bigger error.
+	 * @param randomSeed the seed of the choice of the sources.
+	 */
+	public void setSampling(double epsilon, double delta, long randomSeed) {
+		setSampling(sampleSize(epsilon, delta, targets.length), randomSeed);
+	}
+
+	/**
+	 * Report the number of the sources for the (epsilon, delta) guarantee.
+	 * @param epsilon the allowed error as the part of the number of pairs of vertices.
+	 * @param delta the allowed probability of the bigger error.
+	 * @param edges the number of the edges.
+	 * @return The number of the sources.
+	 */
+	public static int sampleSize(double epsilon, double delta, int edges) {
+		if(epsilon <= 0 || delta <= 0 || delta >= 1) {
+			throw new IllegalArgumentException("Wrong epsilon or delta: " + epsilon + ", " + delta);
+		}
+		double k = Math.log(2.0 * Math.max(edges, 1) / delta) / (2 * epsilon * epsilon);
+		return (int) Math.min(Math.ceil(k), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Compute the betweenness of all edges which are not removed,
+	 * exact or estimated by the sampled sources.
+	 * @return The scores indexed by the edge index. The array is reused by the next call.
+	 */
+	public double[] compute() {
+		int n = offsets.length - 1;
+		sources = chooseSources(n);
+		int count = sources == null ? n : sources.length;
+		Arrays.fill(scores, 0);
+		connected = accumulateAll(sources, count, scores);
+		scale(scores, count);
+		symmetrize(scores);
+		return scores;
+	}
+
+	/**
+	 * Remove the edge and its reverse direction and update the scores
+	 * of the last computation only for the sources whose shortest path DAG
+	 * contained the edge. If they are the most of the sources, all scores
+	 * are computed again. The graph must be undirected.
+	 * @param e the edge index.
+	 * @return The scores indexed by the edge index.
+	 */
+	public double[] removeAndUpdate(int e) {
+		int n = offsets.length - 1;
+		int u = getFrom(e);
+		int v = targets[e];
+		if(distU == null) {
+			distU = new int[n];
+			distV = new int[n];
+		}
+		int before = distances(u, distU);
+		distances(v, distV);
+
+		int count = sources == null ? n : sources.length;
+		int[] affected = new int[count];
+		int k = 0;
+		for(int i = 0; i < count; i++) {
+			int s = sources == null ? i : sources[i];
+			if(distU[s] >= 0 && distU[s] != distV[s]) {
+				affected[k++] = s;
+			}
+		}
+		if(2 * k > count) {
+			removeEdge(e);
+			return compute();
+		}
+
+		double[] diff = new double[scores.length];
+		accumulateAll(affected, k, diff);
+		for(int i = 0; i < diff.length; i++) {
+			diff[i] = -diff[i];
+		}
+		removeEdge(e);
+		accumulateAll(affected, k, diff);
+		scale(diff, count);
+		symmetrize(diff);
+		for(int i = 0; i < diff.length; i++) {
+			if(!removed[i]) {
+				scores[i] += diff[i];
+			}
+		}
+		// the component of u splits if u reaches less vertices now
+		if(distances(u, distU) < before) {
+			connected = false;
+		}
+		return scores;
+	}
+
+	/**
+	 * Add the dependencies of the sources, in parallel if it is set.
+	 * @param list the sources or null for all vertices.
+	 * @param count the number of the sources.
+	 * @param into the scores to add to.
+	 * @return true if every source reached all vertices.
+	 */
+	private boolean accumulateAll(int[] list, int count, double[] into) {
+		int n = offsets.length - 1;
+		if(parallelism > 1 && count > 1) {
+			return accumulateParallel(list, count, into);
+		}
+		boolean all = true;
+		Scratch w = new Scratch(n);
+		for(int i = 0; i < count; i++) {
+			if(accumulate(list == null ? i : list[i], w, into) < n) {
+				all = false;
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * Scale the sampled dependencies to all sources.
+	 * @param s the scores.
+	 * @param count the number of the sampled sources.
+	 */
+	private void scale(double[] s, int count) {
+		if(sources != null) {
+			double factor = (double) (offsets.length - 1) / count;
+			for(int e = 0; e < s.length; e++) {
+				s[e] *= factor;
+			}
+		}
+	}
+
+	/**
+	 * The BFS distances in edges over the edges which are not removed.
+	 * @param s the source vertex.
+	 * @param dist the array to fill, -1 for the unreachable vertices.
+	 * @return The number of the vertices reached from the source.
+	 */
+	private int distances(int s, int[] dist) {
+		Arrays.fill(dist, -1);
+		int[] queue = new int[dist.length];
+		int head = 0;
+		int tail = 0;
+		dist[s] = 0;
+		queue[tail++] = s;
+		while(head < tail) {
+			int v = queue[head++];
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				int t = targets[e];
+				if(!removed[e] && dist[t] < 0) {
+					dist[t] = dist[v] + 1;
+					queue[tail++] = t;
+				}
+			}
+		}
+		return tail;
+	}
+
+	/**
+	 * Choose the sampled sources by the partial Fisher-Yates shuffle.
+	 * @param n the number of the vertices.
+	 * @return The sources or null if all vertices are the sources.
+	 */
+	private int[] chooseSources(int n) {
+		if(samples == 0 || samples >= n) {
+			return null;
+		}
+		int[] all = new int[n];
+		for(int v = 0; v < n; v++) {
+			all[v] = v;
+		}
+		Random random = new Random(seed);
+		for(int i = 0; i < samples; i++) {
+			int j = i + random.nextInt(n - i);
+			int t = all[i];
+			all[i] = all[j];
+			all[j] = t;
+		}
+		return Arrays.copyOf(all, samples);
+	}
+
+	/**
+	 * Add the dependencies of the sources by the workers of the pool.
+	 * @param list the sources or null for all vertices.
+	 * @param count the number of the sources.
+	 * @param into the scores to add to.
+	 * @return true if every source reached all vertices.
+	 */
+	private boolean accumulateParallel(int[] list, int count, double[] into) {
+		AtomicInteger next = new AtomicInteger();
+		int threads = Math.min(parallelism, count);
+		Worker[] workers = new Worker[threads];
+		if(pool == null) {
+			pool = new ForkJoinPool(parallelism);
+		}
+		for(int i = 0; i < threads; i++) {
+			workers[i] = new Worker(next, list, count);
+			pool.execute(workers[i]);
+		}
+		for(Worker w : workers) {
+			w.join();
+		}
+		boolean all = true;
+		for(Worker w : workers) {
+			for(int e = 0; e < into.length; e++) {
+				into[e] += w.partial[e];
+			}
+			all &= w.connected;
+		}
+		return all;
+	}
+
+	/**
+	 * Report the connectivity found by the last computation.
+	 * @return true if every source reached all vertices.
+	 */
+	public boolean isConnected() {
+		return connected;
+	}
+
+	/**
+	 * Get the scores of the last computation.
+	 * @return The scores indexed by the edge index.
+	 */
+	public double[] getScores() {
+		return scores;
+	}
+
+	/**
+	 * Find the edge with the highest score.
+	 * @return The edge index or -1 if all edges are removed.
+	 */
+	public int maxEdge() {
+		int best = -1;
+		for(int e = 0; e < scores.length; e++) {
+			if(!removed[e] && (best < 0 || scores[e] > scores[best])) {
+				best = e;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Remove the edge and its reverse direction from the next computations.
+	 * @param e the edge index.
+	 */
+	public void removeEdge(int e) {
+		removed[e] = true;
+		scores[e] = 0;
+		if(twin[e] >= 0) {
+			removed[twin[e]] = true;
+			scores[twin[e]] = 0;
+		}
+	}
+
+	/**
+	 * Find the connected components over the edges which are not removed.
+	 * @return The components of the dense vertices.
+	 */
+	public UnionFind components() {
+		int n = offsets.length - 1;
+		UnionFind uf = new UnionFind(n);
+		for(int v = 0; v < n; v++) {
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				if(!removed[e]) {
+					uf.union(v, targets[e]);
+				}
+			}
+		}
+		return uf;
+	}
+
+	/**
+	 * Report if the edge was removed.
+	 * @param e the edge index.
+	 * @return true if the edge was removed.
+	 */
+	public boolean isRemoved(int e) {
+		return removed[e];
+	}
+
+	/**
+	 * Get the start vertex of the edge.
+	 * @param e the edge index.
+	 * @return The dense id of the start vertex.
+	 */
+	public int getFrom(int e) {
+		int lo = 0;
+		int hi = offsets.length - 2;
+		// the last vertex whose edges start at or before e
+		while(lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if(offsets[mid] <= e) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Get the end vertex of the edge.
+	 * @param e the edge index.
+	 * @return The dense id of the end vertex.
+	 */
+	public int getTo(int e) {
+		return targets[e];
+	}
+
+	/**
+	 * Add the dependencies of the shortest paths from one source.
+	 * @param s the source vertex.
+	 * @param w the scratch arrays.
+	 * @param into the scores to add to.
+	 * @return The number of the vertices reached from the source.
+	 */
+	private int accumulate(int s, Scratch w, double[] into) {
+		int[] dist = w.dist;
+		double[] sigma = w.sigma;
+		double[] delta = w.delta;
+		int[] order = w.order;
+
+		// BFS counting the shortest paths, order[] keeps the visiting order
+		int head = 0;
+		int tail = 0;
+		dist[s] = 0;
+		sigma[s] = 1;
+		order[tail++] = s;
+		while(head < tail) {
+			int v = order[head++];
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				if(removed[e]) {
+					continue;
+				}
+				int t = targets[e];
+				if(dist[t] < 0) {
+					dist[t] = dist[v] + 1;
+					order[tail++] = t;
+				}
+				if(dist[t] == dist[v] + 1) {
+					sigma[t] += sigma[v];
+				}
+			}
+		}
+
+		// the dependencies flow back from the farthest vertices
+		for(int i = tail - 1; i >= 0; i--) {
+			int v = order[i];
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				if(removed[e]) {
+					continue;
+				}
+				int t = targets[e];
+				if(dist[t] == dist[v] + 1) {
+					double c = sigma[v] / sigma[t] * (1 + delta[t]);
+					into[e] += c;
+					delta[v] += c;
+				}
+			}
+		}
+
+		// reset only what was touched
+		for(int i = 0; i < tail; i++) {
+			int v = order[i];
+			dist[v] = -1;
+			sigma[v] = 0;
+			delta[v] = 0;
+		}
+		return tail;
+	}
+
+	/**
+	 * Every pair of vertices was counted from both ends,
+	 * so both directions of an edge get the half of their sum.
+	 * @param s the scores.
+	 */
+	private void symmetrize(double[] s) {
+		for(int e = 0; e < s.length; e++) {
+			int r = twin[e];
+			if(r > e) {
+				double x = (s[e] + s[r]) / 2;
+				s[e] = x;
+				s[r] = x;
+			}
+		}
+	}
+
+	/**
+	 * The worker takes the next source until all are done
+	 * and keeps its own scratch arrays and partial scores.
+	 */
+	private class Worker extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final AtomicInteger next;
+		final int[] list;
+		final int count;
+		final double[] partial;
+		boolean connected;
+
+		Worker(AtomicInteger next, int[] list, int count) {
+			this.next = next;
+			this.list = list;
+			this.count = count;
+			this.partial = new double[targets.length];
+			this.connected = true;
+		}
+
+		@Override
+		protected void compute() {
+			int n = offsets.length - 1;
+			Scratch w = new Scratch(n);
+			int i;
+			while((i = next.getAndIncrement()) < count) {
+				if(accumulate(list == null ? i : list[i], w, partial) < n) {
+					connected = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The arrays of one BFS, reset after every source.
+	 */
+	private static class Scratch {
+		final int[] dist;
+		final double[] sigma;
+		final double[] delta;
+		final int[] order;
+
+		Scratch(int n) {
+			dist = new int[n];
+			sigma = new double[n];
+			delta = new double[n];
+			order = new int[n];
+			Arrays.fill(dist, -1);
+		}
+	}
+}
@@ -0,0 +1,197 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * The egonet of a vertex of a CompactGraph: the center, its neighbors
+ * and the edges of the graph between them, in the local CSR arrays.
+ *
+ * The members are sorted by the dense id, so the edges of a member inside
+ * the egonet are the intersection of two sorted arrays, its row and the
+ * members. The intersection gallops over the longer array, so a member of
+ * a big degree costs O(size log degree) instead of O(degree).
+ *
+ * An Egonet is reused for the next center: the arrays only grow, so a
+ * thread building many egonets allocates almost nothing.
+ *
+ */
+package graph;
+
+import java.util.Arrays;
+
+public class Egonet {
+	private int center;
+	private int[] points;
+	private int[] members;
+	private int size;
+	private int[] offsets;
+	private int[] targets;
+	private int[] weights;
+
+	/**
+	 * Create a new empty Egonet
+	 */
+	public Egonet() {
+		this.center = -1;
+		this.points = new int[16];
+		this.members = new int[16];
+		this.size = 0;
+		this.offsets = new int[17];
+		this.targets = new int[16];
+		this.weights = new int[16];
+	}
+
+	/**
+	 * Build the egonet of the vertex, replacing the previous one.
+	 * @param g the graph.
+	 * @param c the dense id of the center.
+	 */
+	void build(CompactGraph g, int c) {
+		int[] gPoints = g.points();
+		int[] gOffsets = g.offsets();
+		int[] gTargets = g.targets();
+		int[] gWeights = g.weights();
+		center = gPoints[c];
+
+		// the members are the center and its neighbors, sorted by dense id
+		int degree = gOffsets[c + 1] - gOffsets[c];
+		if(members.length < degree + 1) {
+			members = new int[Math.max(degree + 1, 2 * members.length)];
+			points = new int[members.length];
+			offsets = new int[members.length + 1];
+		}
+		size = 0;
+		boolean centerAdded = false;
+		for(int e = gOffsets[c]; e < gOffsets[c + 1]; e++) {
+			int t = gTargets[e];
+			if(!centerAdded && c <= t) {
+				members[size++] = c;
+				centerAdded = true;
+			}
+			if(t != c) {
+				members[size++] = t;
+			}
+		}
+		if(!centerAdded) {
+			members[size++] = c;
+		}
+
+		int count = 0;
+		for(int i = 0; i < size; i++) {
+			int v = members[i];
+			points[i] = gPoints[v];
+			int e = gOffsets[v];
+			int end = gOffsets[v + 1];
+			int j = 0;
+			while(e < end && j < size) {
+				int a = gTargets[e];
+				int b = members[j];
+				if(a == b) {
+					if(count == targets.length) {
+						targets = Arrays.copyOf(targets, 2 * count);
+						weights = Arrays.copyOf(weights, 2 * count);
+					}
+					targets[count] = j;
+					weights[count] = gWeights[e];
+					count++;
+					e++;
+					j++;
+				} else if(a < b) {
+					e = gallop(gTargets, e + 1, end, b);
+				} else {
+					j = gallop(members, j + 1, size, a);
+				}
+			}
+			offsets[i + 1] = count;
+		}
+	}
+
+	/**
+	 * Find the first position of a value not less than the key
+	 * by the doubling steps and the binary search.
+	 * @param a the sorted array.
+	 * @param from the first position to look at.
+	 * @param to the end of the range.
+	 * @param key the key.
+	 * @return The position, to if all values are less than the key.
+	 */
+	static int gallop(int[] a, int from, int to, int key) {
+		int step = 1;
+		int lo = from;
+		int hi = from;
+		while(hi < to && a[hi] < key) {
+			lo = hi + 1;
+			hi = from + step;
+			step <<= 1;
+		}
+		hi = Math.min(hi, to);
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(a[mid] < key) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Get the number of the center.
+	 * @return The number of the center vertex.
+	 */
+	public int getCenter() {
+		return center;
+	}
+
+	/**
+	 * Report the number of the members including the center.
+	 * @return The number of the vertices of the egonet.
+	 */
+	public int getNumVertices() {
+		return size;
+	}
+
+	/**
+	 * Report the number of the edges between the members.
+	 * @return The number of the directed edges of the egonet.
+	 */
+	public int getNumEdges() {
+		return offsets[size];
+	}
+
+	/**
+	 * Get the number of a member.
+	 * @param i the local id of the member, 0..size-1.
+	 * @return The vertex number.
+	 */
+	public int getPoint(int i) {
+		return points[i];
+	}
+
+	/**
+	 * Report the number of the edges of a member inside the egonet.
+	 * @param i the local id of the member.
+	 * @return The out degree inside the egonet.
+	 */
+	public int outDegree(int i) {
+		return offsets[i + 1] - offsets[i];
+	}
+
+	/**
+	 * Get the local ids of the ends of the edges of a member.
+	 * @param i the local id of the member.
+	 * @return The local ids in the ascending order.
+	 */
+	public int[] neighbors(int i) {
+		return Arrays.copyOfRange(targets, offsets[i], offsets[i + 1]);
+	}
+
+	/**
+	 * Copy the egonet into a graph which outlives the reuse of this Egonet.
+	 * @return The CompactGraph of the egonet.
+	 */
+	public CompactGraph toCompactGraph() {
+		int m = offsets[size];
+		return new CompactGraph(Arrays.copyOf(points, size), Arrays.copyOf(offsets, size + 1),
+				Arrays.copyOf(targets, m), Arrays.copyOf(weights, m));
+	}
+}
@@ -0,0 +1,238 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * The egonet of a vertex as a read-only view over the arrays of its
+ * CompactGraph: only the sorted dense ids of the members are kept, and
+ * the edges between them are found on every read by the galloping
+ * intersection of the rows with the members, as Egonet does. Counting
+ * or iterating the edges allocates nothing per edge.
+ *
+ * The view keeps the arrays of the graph at its creation, which are never
+ * changed in place, so a later change of the graph doesn't affect it.
+ * A graph that outlives the view is built only by materialize().
+ *
+ */
+package graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class EgonetView implements Graph {
+	private final int center;
+	private final int[] points;
+	private final int[] offsets;
+	private final int[] targets;
+	private final int[] weights;
+	private final int[] members;
+
+	/**
+	 * Create the view of the egonet of the vertex.
+	 * @param g the graph.
+	 * @param c the dense id of the center.
+	 */
+	EgonetView(CompactGraph g, int c) {
+		this.center = c;
+		this.points = g.points();
+		this.offsets = g.offsets();
+		this.targets = g.targets();
+		this.weights = g.weights();
+		int[] m = new int[offsets[c + 1] - offsets[c] + 1];
+		int size = 0;
+		boolean centerAdded = false;
+		for(int e = offsets[c]; e < offsets[c + 1]; e++) {
+			int t = targets[e];
+			if(!centerAdded && c <= t) {
+				m[size++] = c;
+				centerAdded = true;
+			}
+			if(t != c) {
+				m[size++] = t;
+			}
+		}
+		if(!centerAdded) {
+			m[size++] = c;
+		}
+		this.members = size == m.length ? m : Arrays.copyOf(m, size);
+	}
+
+	/**
+	 * Get the number of the center.
+	 * @return The number of the center vertex.
+	 */
+	public int getCenter() {
+		return points[center];
+	}
+
+	/**
+	 * Report the number of the members including the center.
+	 * @return The number of the vertices of the egonet.
+	 */
+	public int getNumVertices() {
+		return members.length;
+	}
+
+	/**
+	 * Get the number of a member.
+	 * @param i the local id of the member, 0..size-1 in the ascending order of the numbers.
+	 * @return The vertex number.
+	 */
+	public int getPoint(int i) {
+		return points[members[i]];
+	}
+
+	/**
+	 * Report the number of the edges of a member inside the egonet.
+	 * @param i the local id of the member.
+	 * @return The out degree inside the egonet.
+	 */
+	public int outDegree(int i) {
+		int count = 0;
+		PrimitiveIterator.OfInt it = neighbors(i);
+		while(it.hasNext()) {
+			it.nextInt();
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Report the number of the edges between the members.
+	 * @return The number of the directed edges of the egonet.
+	 */
+	public int getNumEdges() {
+		int count = 0;
+		for(int i = 0; i < members.length; i++) {
+			count += outDegree(i);
+		}
+		return count;
+	}
+
+	/**
+	 * Iterate over the ends of the edges of a member inside the egonet.
+	 * @param i the local id of the member.
+	 * @return The iterator of the local ids of the ends in the ascending order.
+	 */
+	public PrimitiveIterator.OfInt neighbors(int i) {
+		return new Neighbors(members[i]);
+	}
+
+	/**
+	 * Copy the egonet into a CompactGraph.
+	 * @return The graph of the egonet.
+	 */
+	public CompactGraph materialize() {
+		Egonet ego = new Egonet();
+		ego.build(new CompactGraph(points, offsets, targets, weights), center);
+		return ego.toCompactGraph();
+	}
+
+	/**
+	 * The view can't be changed.
+	 * @param num the index of the vertex.
+	 */
+	@Override
+	public void addVertex(int num) {
+		throw new UnsupportedOperationException("The egonet view is read-only");
+	}
+
+	/**
+	 * The view can't be changed.
+	 * @param from the index of the start point for the edge.
+	 * @param to the index of the end point for the edge.
+	 */
+	@Override
+	public void addEdge(int from, int to) {
+		throw new UnsupportedOperationException("The egonet view is read-only");
+	}
+
+	/**
+	 * Finds the egonet centered at a given node inside this egonet.
+	 * @param c the number of the center vertex.
+	 * @return The graph on the egonet.
+	 */
+	@Override
+	public Graph getEgonet(int c) {
+		return materialize().getEgonet(c);
+	}
+
+	/**
+	 * Returns all SCCs of the egonet.
+	 * @return The list of the graphs of the SCCs.
+	 */
+	@Override
+	public List<Graph> getSCCs() {
+		return materialize().getSCCs();
+	}
+
+	/**
+	 * Return the egonet's connections in a readable format.
+	 * @return The map of the egonet.
+	 */
+	@Override
+	public HashMap<Integer, HashSet<Integer>> exportGraph() {
+		HashMap<Integer, HashSet<Integer>> eg = new HashMap<Integer, HashSet<Integer>>();
+		for(int i = 0; i < members.length; i++) {
+			HashSet<Integer> nbrs = new HashSet<Integer>();
+			PrimitiveIterator.OfInt it = neighbors(i);
+			while(it.hasNext()) {
+				nbrs.add(getPoint(it.nextInt()));
+			}
+			eg.put(getPoint(i), nbrs);
+		}
+		return eg;
+	}
+
+	/**
+	 * The galloping intersection of a row with the members.
+	 */
+	private class Neighbors implements PrimitiveIterator.OfInt {
+		private int e;
+		private final int end;
+		private int j;
+		private int next;
+
+		Neighbors(int v) {
+			this.e = offsets[v];
+			this.end = offsets[v + 1];
+			this.j = 0;
+			advance();
+		}
+
+		private void advance() {
+			next = -1;
+			while(e < end && j < members.length) {
+				int a = targets[e];
+				int b = members[j];
+				if(a == b) {
+					next = j;
+					e++;
+					j++;
+					return;
+				} else if(a < b) {
+					e = Egonet.gallop(targets, e + 1, end, b);
+				} else {
+					j = Egonet.gallop(members, j + 1, members.length, a);
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next >= 0;
+		}
+
+		@Override
+		public int nextInt() {
+			if(next < 0) {
+				throw new NoSuchElementException();
+			}
+			int local = next;
+			advance();
+			return local;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * The egonets of many vertices of a CompactGraph built by the threads.
+ *
+ * Every thread takes the next chunk of the centers and builds their
+ * egonets one by one in its own reused Egonet, passing every egonet to
+ * the handler as soon as it is built. Nothing is kept, so the memory
+ * doesn't grow with the number of the centers. The handler is called
+ * by several threads at once and must not keep the Egonet after the
+ * call: it is overwritten by the next center of the thread.
+ *
+ */
+package graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Egonets {
+	private static final int CHUNK = 64;
+
+	private final CompactGraph graph;
+	private int parallelism;
+
+	/**
+	 * The receiver of the built egonets.
+	 */
+	public interface Handler {
+		/**
+		 * Take the egonet of the next center.
+		 * @param ego the egonet, valid only during the call.
+		 */
+		void egonet(Egonet ego);
+	}
+
+	/**
+	 * Create a new Egonets for the graph.
+	 * @param g the graph.
+	 */
+	public Egonets(CompactGraph g) {
+		this.graph = g;
+		this.parallelism = 1;
+	}
+
+	/**
+	 * Set the number of the threads.
+	 * @param threads the number of the threads, 1 for the calling thread only.
+	 */
+	public void setParallelism(int threads) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+		}
+		parallelism = threads;
+	}
+
+	/**
+	 * Build the egonets of all vertices.
+	 * @param handler the receiver of the egonets.
+	 */
+	public void forAll(Handler handler) {
+		int n = graph.getNumVertices();
+		int[] centers = new int[n];
+		for(int v = 0; v < n; v++) {
+			centers[v] = v;
+		}
+		run(centers, handler);
+	}
+
+	/**
+	 * Build the egonets of the vertices. The numbers missing
+	 * in the graph are skipped.
+	 * @param points the numbers of the centers.
+	 * @param handler the receiver of the egonets.
+	 */
+	public void forEach(int[] points, Handler handler) {
+		int[] centers = new int[points.length];
+		int count = 0;
+		for(int p : points) {
+			int v = graph.indexOf(p);
+			if(v >= 0) {
+				centers[count++] = v;
+			}
+		}
+		run(Arrays.copyOf(centers, count), handler);
+	}
+
+	/**
+	 * Build the egonets of the dense vertices.
+	 * @param centers the dense ids of the centers.
+	 * @param handler the receiver of the egonets.
+	 */
+	private void run(int[] centers, Handler handler) {
+		// build the graph before the threads read it
+		graph.getNumVertices();
+		AtomicInteger cursor = new AtomicInteger();
+		int threads = Math.min(parallelism, Math.max(1, (centers.length + CHUNK - 1) / CHUNK));
+		if(threads == 1) {
+			new Worker(centers, cursor, handler).compute();
+			return;
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			Worker[] workers = new Worker[threads];
+			for(int i = 0; i < threads; i++) {
+				workers[i] = new Worker(centers, cursor, handler);
+				pool.execute(workers[i]);
+			}
+			for(Worker w : workers) {
+				w.join();
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The worker takes the next chunks of the centers.
+	 */
+	private class Worker extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final int[] centers;
+		final AtomicInteger cursor;
+		final Handler handler;
+		final Egonet ego;
+
+		Worker(int[] centers, AtomicInteger cursor, Handler handler) {
+			this.centers = centers;
+			this.cursor = cursor;
+			this.handler = handler;
+			this.ego = new Egonet();
+		}
+
+		@Override
+		protected void compute() {
+			int from;
+			while((from = cursor.getAndAdd(CHUNK)) < centers.length) {
+				int to = Math.min(from + CHUNK, centers.length);
+				for(int i = from; i < to; i++) {
+					ego.build(graph, centers[i]);
+					handler.egonet(ego);
+				}
+			}
+		}
+	}
+}
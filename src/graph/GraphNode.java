@@ -14,11 +14,8 @@ public class GraphNode {
 	private int point;
 	private HashMap<Integer, GraphEdge> edgesMap;
 	private HashMap<Integer, GraphNode> neighborsMap;
-	private Double distance;
 	private CommunityNode community;
 	private HashSet<Integer> allNodesSet;
-
-	static final double DEFAULT_DISTANCE = Double.POSITIVE_INFINITY;
 	
 	/**
 	 * Create a new GraphNode
@@ -28,7 +25,6 @@ public class GraphNode {
 		this.setPoint(p);
 		this.edgesMap = new HashMap<Integer, GraphEdge>();
 		this.neighborsMap = new HashMap<Integer, GraphNode>();
-		this.distance = DEFAULT_DISTANCE;
 		this.community = null;
 		this.allNodesSet = new HashSet<Integer>();
 		allNodesSet.add(p);
@@ -169,58 +165,35 @@ public class GraphNode {
 		return weight;
 	}
 	
-	/** Get the weight of current node on the path to the goal.
-	 * 
-	 * @return The weight.
-	 */		
-	public Double getDistance() {
-		return distance;
-	}	
-	
-	/** Get the distance or, other words, weight from the current node to the neighbor node
-	 * 
-	 * @param neighbor  The neighbor node
-	 * @return The weight or infinity, if edge wasn't found.
-	 */
-	public Double getDistance(GraphNode neighbor) {
-		for(GraphEdge edge : getEdges()) {
-			if(edge.getTo().equals(neighbor)) {
-				return distance + edge.getLength();
-			}	
-		}
-		return Double.POSITIVE_INFINITY;
-	}
-	/** Set the weight of current node on the path to the goal.
-	 * @param The weight.
-	 */		
-	public void setDistance(double d) {
-		distance = d;
-	}
-	
-	/** 
-	 *  Set default distances for the node
-	 */	
-	public void setDefaultDistance() {
-		distance = DEFAULT_DISTANCE;
-	}
-	
 	public String toString() {
-		String s = "N" + getPoint() + " nbrs=[";
+		StringBuilder s = new StringBuilder("N").append(getPoint()).append(" nbrs=[");
 		for(GraphNode n : getNeighbors()) {
-			s += n.getPoint() + " ";
+			s.append(n.getPoint()).append(' ');
 		}
-		s = s.trim() + "]";
-		s += " allnodes=[";
+		trimEnd(s).append("] allnodes=[");
 		for(Integer n : getAllNodesSet()) {
-			s += n + " ";
+			s.append(n).append(' ');
 		}
-		s = s.trim() + "]";
-		s += " {";
+		trimEnd(s).append("] {");
 		for(GraphEdge g : getEdges()) {
-			s += g.toString();
+			s.append(g.toString());
 		}
-		s = s.trim() + "]";
+		trimEnd(s).append(']');
 
+		return s.toString();
+	}
+
+	/**
+	 * Remove the trailing whitespace.
+	 * @param s the string being built.
+	 * @return The same StringBuilder.
+	 */
+	static StringBuilder trimEnd(StringBuilder s) {
+		int end = s.length();
+		while(end > 0 && Character.isWhitespace(s.charAt(end - 1))) {
+			end--;
+		}
+		s.setLength(end);
 		return s;
 	}
 }
@@ -0,0 +1,122 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * The min-heap of the dense vertices 0..n-1 by their keys, stored as
+ * a 4-ary heap in an int array with the position of every vertex,
+ * so the key of a vertex in the heap is decreased in O(log n)
+ * without a second entry. Nothing is allocated after the creation.
+ *
+ */
+package graph;
+
+import java.util.Arrays;
+
+class IndexedHeap {
+	private static final int D = 4;
+
+	private final int[] heap;
+	// the position of every vertex in the heap, -1 if it is not in the heap
+	private final int[] pos;
+	private final double[] key;
+	private int size;
+
+	/**
+	 * Create a new empty heap.
+	 * @param n the number of the vertices.
+	 */
+	IndexedHeap(int n) {
+		this.heap = new int[n];
+		this.pos = new int[n];
+		this.key = new double[n];
+		this.size = 0;
+		Arrays.fill(pos, -1);
+	}
+
+	/**
+	 * Report whether the heap is empty.
+	 * @return True if there are no vertices in the heap.
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Add the vertex or decrease its key.
+	 * @param v the vertex.
+	 * @param k the key, not bigger than the key in the heap.
+	 */
+	void push(int v, double k) {
+		int i = pos[v];
+		if(i < 0) {
+			i = size++;
+		}
+		key[v] = k;
+		siftUp(v, i);
+	}
+
+	/**
+	 * Remove the vertex of the smallest key.
+	 * @return The vertex.
+	 */
+	int poll() {
+		int top = heap[0];
+		pos[top] = -1;
+		int last = heap[--size];
+		if(size > 0) {
+			siftDown(last, 0);
+		}
+		return top;
+	}
+
+	/**
+	 * Remove all vertices in O(size).
+	 */
+	void clear() {
+		for(int i = 0; i < size; i++) {
+			pos[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	private void siftUp(int v, int i) {
+		double k = key[v];
+		while(i > 0) {
+			int p = (i - 1) / D;
+			int u = heap[p];
+			if(key[u] <= k) {
+				break;
+			}
+			heap[i] = u;
+			pos[u] = i;
+			i = p;
+		}
+		heap[i] = v;
+		pos[v] = i;
+	}
+
+	private void siftDown(int v, int i) {
+		double k = key[v];
+		while(true) {
+			int first = D * i + 1;
+			if(first >= size) {
+				break;
+			}
+			int best = first;
+			int end = Math.min(first + D, size);
+			for(int c = first + 1; c < end; c++) {
+				if(key[heap[c]] < key[heap[best]]) {
+					best = c;
+				}
+			}
+			int u = heap[best];
+			if(key[u] >= k) {
+				break;
+			}
+			heap[i] = u;
+			pos[u] = i;
+			i = best;
+		}
+		heap[i] = v;
+		pos[v] = i;
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * Semi-synchronous label propagation on a CompactGraph.
+ *
+ * Every vertex starts with its own label and takes the label of the
+ * biggest weight among its neighbors, keeping its own label on a tie
+ * or else taking the smallest one. The vertices are colored so that no
+ * two neighbors share a color, and the vertices of one color are
+ * updated at once by the threads: they don't read each other's labels,
+ * so the result doesn't depend on the number of threads. Unlike the
+ * synchronous updates this can't oscillate between two labels.
+ *
+ * Every thread keeps its own sparse frequency map, a dense int[] of the
+ * weights of the labels plus the list of the touched labels. The pool
+ * of the threads is created by setParallelism and serves every run until
+ * close().
+ *
+ */
+package graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LabelPropagation implements AutoCloseable {
+	private final CompactGraph graph;
+	private int parallelism;
+	// the threads of the updates, null for the sequential ones
+	private ForkJoinPool pool;
+	private int maxIterations;
+	private long seed;
+	private int[] labels;
+	private int iterations;
+
+	/**
+	 * Create a new LabelPropagation for the undirected graph.
+	 * @param g the graph with both directions of every edge.
+	 */
+	public LabelPropagation(CompactGraph g) {
+		this.graph = g;
+		this.parallelism = 1;
+		this.pool = null;
+		this.maxIterations = 100;
+		this.seed = 0;
+		this.labels = null;
+		this.iterations = 0;
+	}
+
+	/**
+	 * Set the number of the threads.
+	 * @param threads the number of the threads, 1 for the sequential updates.
+	 */
+	public void setParallelism(int threads) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+		}
+		if(threads == parallelism) {
+			return;
+		}
+		close();
+		parallelism = threads;
+		if(threads > 1) {
+			pool = new ForkJoinPool(threads);
+		}
+	}
+
+	/**
+	 * Stop the threads. A later parallel run starts a new pool.
+	 */
+	@Override
+	public void close() {
+		if(pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Set the most iterations over all vertices.
+	 * @param max the number of the iterations.
+	 */
+	public void setMaxIterations(int max) {
+		maxIterations = max;
+	}
+
+	/**
+	 * Set the seed of the vertex order of the coloring.
+	 * @param randomSeed the seed.
+	 */
+	public void setSeed(long randomSeed) {
+		seed = randomSeed;
+	}
+
+	/**
+	 * Propagate the labels until none changes or the iterations run out.
+	 * @return The community of every dense vertex, numbered 0..count-1.
+	 */
+	public int[] run() {
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		int n = offsets.length - 1;
+		labels = new int[n];
+		for(int v = 0; v < n; v++) {
+			labels[v] = v;
+		}
+		iterations = 0;
+		if(n == 0) {
+			return labels;
+		}
+		int[] byColor = new int[n];
+		int[] colorOffsets = Louvain.colorClasses(offsets, targets, seed, byColor);
+
+		int threads = Math.min(parallelism, n);
+		int[][] weight = new int[threads][];
+		int[][] list = new int[threads][];
+		for(int i = 0; i < threads; i++) {
+			weight[i] = new int[n];
+			list[i] = new int[n];
+		}
+		if(threads > 1 && pool == null) {
+			pool = new ForkJoinPool(parallelism);
+		}
+		AtomicInteger changed = new AtomicInteger();
+		do {
+			changed.set(0);
+			for(int c = 0; c + 1 < colorOffsets.length; c++) {
+				AtomicInteger cursor = new AtomicInteger(colorOffsets[c]);
+				int end = colorOffsets[c + 1];
+				if(threads == 1) {
+					new Updater(byColor, cursor, end, weight[0], list[0], changed).compute();
+					continue;
+				}
+				Updater[] updaters = new Updater[threads];
+				for(int i = 0; i < threads; i++) {
+					updaters[i] = new Updater(byColor, cursor, end, weight[i], list[i], changed);
+					pool.execute(updaters[i]);
+				}
+				for(Updater u : updaters) {
+					u.join();
+				}
+			}
+			iterations++;
+		} while(changed.get() > 0 && iterations < maxIterations);
+		Louvain.renumber(labels);
+		return labels;
+	}
+
+	/**
+	 * Get the result of the last run.
+	 * @return The community of every dense vertex.
+	 */
+	public int[] getLabels() {
+		return labels;
+	}
+
+	/**
+	 * Report the number of the iterations of the last run.
+	 * @return The number of the iterations.
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * The worker takes the next vertex of a color class and gives it
+	 * the label of the biggest weight among its neighbors.
+	 */
+	private class Updater extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final int[] byColor;
+		final AtomicInteger cursor;
+		final int end;
+		final int[] weight;
+		final int[] list;
+		final AtomicInteger changed;
+
+		Updater(int[] byColor, AtomicInteger cursor, int end, int[] weight, int[] list, AtomicInteger changed) {
+			this.byColor = byColor;
+			this.cursor = cursor;
+			this.end = end;
+			this.weight = weight;
+			this.list = list;
+			this.changed = changed;
+		}
+
+		@Override
+		protected void compute() {
+			int[] offsets = graph.offsets();
+			int[] targets = graph.targets();
+			int[] weights = graph.weights();
+			int moved = 0;
+			int i;
+			while((i = cursor.getAndIncrement()) < end) {
+				int v = byColor[i];
+				int size = 0;
+				for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+					int t = targets[e];
+					if(t == v) {
+						continue;
+					}
+					int label = labels[t];
+					if(weight[label] == 0) {
+						list[size++] = label;
+					}
+					weight[label] += weights[e];
+				}
+				if(size == 0) {
+					continue;
+				}
+				int own = labels[v];
+				int best = own;
+				int bestWeight = weight[own];
+				for(int j = 0; j < size; j++) {
+					int label = list[j];
+					int w = weight[label];
+					if(w > bestWeight || (w == bestWeight && best != own && label < best)) {
+						best = label;
+						bestWeight = w;
+					}
+				}
+				for(int j = 0; j < size; j++) {
+					weight[list[j]] = 0;
+				}
+				if(best != own) {
+					labels[v] = best;
+					moved++;
+				}
+			}
+			if(moved > 0) {
+				changed.addAndGet(moved);
+			}
+		}
+	}
+}
@@ -0,0 +1,265 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * The Leiden method on a CompactGraph, which unlike the Louvain method
+ * guarantees well connected communities.
+ *
+ * Every level has three phases:
+ * - the fast local moving: only the vertices in the queue are visited,
+ *   and the neighbors of a moved vertex outside of its new community
+ *   are put back into the queue;
+ * - the refinement: every community starts from the single vertices,
+ *   and a single vertex well connected to its community is merged into
+ *   a well connected part of the same community with the best
+ *   non-negative gain, so every refined part is connected;
+ * - the aggregation by the refined parts, where the communities of the
+ *   local moving are the initial communities of the next level.
+ *
+ * The levels are repeated until the local moving leaves every vertex of
+ * the level in its own community, until the modularity of a level grows
+ * by less than the minimal improvement, or until there are this many
+ * communities or less.
+ *
+ */
+package graph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class Leiden {
+	private final CompactGraph graph;
+	private double gamma;
+	private int minCommunities;
+	private double minImprovement;
+	private long seed;
+	private int[] membership;
+	private int levels;
+
+	/**
+	 * Create a new Leiden for the undirected graph.
+	 * @param g the graph with both directions of every edge.
+	 */
+	public Leiden(CompactGraph g) {
+		this.graph = g;
+		this.gamma = 1.0;
+		this.minCommunities = 1;
+		this.minImprovement = 0;
+		this.seed = 0;
+		this.membership = null;
+		this.levels = 0;
+	}
+
+	/**
+	 * Set the resolution of the modularity.
+	 * @param g the resolution, 1 for the standard modularity.
+	 */
+	public void setResolution(double g) {
+		gamma = g;
+	}
+
+	/**
+	 * Stop when there are this many communities or less.
+	 * @param k the number of the communities.
+	 */
+	public void setMinCommunities(int k) {
+		minCommunities = k;
+	}
+
+	/**
+	 * Stop when a level improves the modularity by less than this.
+	 * @param delta the minimal improvement, 0 to run until nothing moves.
+	 */
+	public void setMinImprovement(double delta) {
+		minImprovement = delta;
+	}
+
+	/**
+	 * Set the seed of the order of the vertices.
+	 * @param randomSeed the seed.
+	 */
+	public void setSeed(long randomSeed) {
+		seed = randomSeed;
+	}
+
+	/**
+	 * Find the communities.
+	 * @return The community of every dense vertex, numbered 0..count-1.
+	 */
+	public int[] run() {
+		int n = graph.getNumVertices();
+		Random random = new Random(seed);
+		// the vertex of the current level of every vertex of the graph
+		membership = new int[n];
+		for(int v = 0; v < n; v++) {
+			membership[v] = v;
+		}
+		levels = 0;
+		CompactGraph level = graph;
+		int[] initial = null;
+		int[] partition = null;
+		double quality = Double.NEGATIVE_INFINITY;
+		while(true) {
+			int size = level.getNumVertices();
+			partition = new int[size];
+			Louvain.Level l = new Louvain.Level(level, partition);
+			if(initial != null) {
+				l.assign(initial);
+			}
+			Louvain.moveNodesQueued(l, gamma, shuffled(size, random), size);
+			int count = Louvain.renumber(partition);
+			levels++;
+			double q = Modularity.of(level, partition, gamma);
+			if(count == size || count <= minCommunities || q - quality < minImprovement) {
+				break;
+			}
+			quality = q;
+
+			int[] refined = refine(l, partition, random);
+			int refinedCount = Louvain.renumber(refined);
+			if(refinedCount == size) {
+				// nothing was merged, so aggregate by the communities themselves
+				refined = partition;
+				refinedCount = count;
+			}
+			initial = new int[refinedCount];
+			for(int v = 0; v < size; v++) {
+				initial[refined[v]] = partition[v];
+			}
+			for(int v = 0; v < n; v++) {
+				membership[v] = refined[membership[v]];
+			}
+			level = Louvain.aggregate(level, refined, refinedCount);
+		}
+		for(int v = 0; v < n; v++) {
+			membership[v] = partition[membership[v]];
+		}
+		Louvain.renumber(membership);
+		return membership;
+	}
+
+	/**
+	 * Get the result of the last run.
+	 * @return The community of every dense vertex.
+	 */
+	public int[] getMembership() {
+		return membership;
+	}
+
+	/**
+	 * Report the number of the levels of the last run.
+	 * @return The number of the levels.
+	 */
+	public int getLevels() {
+		return levels;
+	}
+
+	/**
+	 * Report the modularity of the last run.
+	 * @return The modularity with the resolution of the run.
+	 */
+	public double getModularity() {
+		return Modularity.of(graph, membership, gamma);
+	}
+
+	/**
+	 * The refinement phase: the single vertices are merged into
+	 * well connected parts inside their communities.
+	 * @param l the level after the local moving.
+	 * @param partition the community of every vertex, 0..count-1.
+	 * @param random the order of the vertices.
+	 * @return The refined part of every vertex.
+	 */
+	private int[] refine(Louvain.Level l, int[] partition, Random random) {
+		int n = l.n;
+		double[] communityTot = new double[n];
+		for(int v = 0; v < n; v++) {
+			communityTot[partition[v]] += l.k[v];
+		}
+		int[] refined = new int[n];
+		int[] refinedSize = new int[n];
+		double[] refinedTot = new double[n];
+		// the weight from a part to the rest of its community
+		double[] refinedOut = new double[n];
+		for(int v = 0; v < n; v++) {
+			refined[v] = v;
+			refinedSize[v] = 1;
+			refinedTot[v] = l.k[v];
+			for(int e = l.offsets[v]; e < l.offsets[v + 1]; e++) {
+				int t = l.targets[e];
+				if(t != v && partition[t] == partition[v]) {
+					refinedOut[v] += l.weights[e];
+				}
+			}
+		}
+
+		double[] weight = new double[n];
+		Arrays.fill(weight, -1);
+		int[] list = new int[n];
+		for(int v : shuffled(n, random)) {
+			if(refined[v] != v || refinedSize[v] != 1) {
+				continue;
+			}
+			int c = partition[v];
+			double rest = communityTot[c] - l.k[v];
+			if(refinedOut[v] < gamma * l.k[v] * rest / l.total) {
+				continue;
+			}
+			int size = 0;
+			for(int e = l.offsets[v]; e < l.offsets[v + 1]; e++) {
+				int t = l.targets[e];
+				if(t == v || partition[t] != c) {
+					continue;
+				}
+				int r = refined[t];
+				if(weight[r] < 0) {
+					weight[r] = 0;
+					list[size++] = r;
+				}
+				weight[r] += l.weights[e];
+			}
+			int best = -1;
+			double bestGain = 0;
+			for(int i = 0; i < size; i++) {
+				int r = list[i];
+				double tot = refinedTot[r];
+				boolean connected = refinedOut[r] >= gamma * tot * (communityTot[c] - tot) / l.total;
+				double gain = weight[r] - gamma * l.k[v] * tot / l.total;
+				if(connected && gain >= bestGain) {
+					best = r;
+					bestGain = gain;
+				}
+			}
+			if(best >= 0) {
+				refined[v] = best;
+				refinedSize[best]++;
+				refinedSize[v] = 0;
+				refinedTot[best] += l.k[v];
+				refinedOut[best] += refinedOut[v] - 2 * weight[best];
+			}
+			for(int i = 0; i < size; i++) {
+				weight[list[i]] = -1;
+			}
+		}
+		return refined;
+	}
+
+	/**
+	 * Shuffle the vertices.
+	 * @param n the number of the vertices.
+	 * @param random the random numbers.
+	 * @return The vertices 0..n-1 in a random order.
+	 */
+	private static int[] shuffled(int n, Random random) {
+		int[] order = new int[n];
+		for(int v = 0; v < n; v++) {
+			order[v] = v;
+		}
+		for(int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int t = order[i];
+			order[i] = order[j];
+			order[j] = t;
+		}
+		return order;
+	}
+}
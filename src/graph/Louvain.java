@@ -0,0 +1,712 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * The Louvain method on a CompactGraph with primitive arrays.
+ *
+ * The local moving phase keeps community[], sigmaTot[] and sigmaIn[] of
+ * the current level. The weights from a vertex to the neighbor communities
+ * are gathered in a sparse accumulator, a dense double[] plus the list of
+ * the touched communities, which is cleared after every vertex, so a move
+ * is evaluated in O(degree) and applied without allocation.
+ *
+ * Moving the single vertex i into the community c gains
+ * kiIn(c) - gamma*sigmaTot(c)*ki/2m in the units of 1/m of the modularity,
+ * where kiIn(c) is the sum of the weights of the edges from i to c.
+ *
+ * After the local moving the communities become the vertices of the next
+ * level with the self-loops keeping the internal weights. The levels are
+ * repeated until no vertex moves. Every level keeps only the int[] of the
+ * communities of its vertices, so the memory of all levels is O(V+E).
+ *
+ * With the parallelism above one the vertices are colored greedily, in the
+ * order shuffled by the seed, so that no two neighbors share a color. The
+ * vertices of one color pick their best communities in parallel; their
+ * weights to the neighbor communities can't change meanwhile. Then the moves
+ * are applied in the vertex order, each only if it still gains against the
+ * current sigmaTot, so the modularity never decreases and the result
+ * depends on the seed only, not on the number of threads or their timing.
+ * The pool of the threads is created by setParallelism and serves all
+ * levels and runs until close().
+ *
+ */
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Louvain implements AutoCloseable {
+	private final CompactGraph graph;
+	private double gamma;
+	private int minCommunities;
+	private int parallelism;
+	// the threads of the local moving, null for the sequential one
+	private ForkJoinPool pool;
+	private long seed;
+	private int[] membership;
+	private int levels;
+	private List<int[]> hierarchy;
+
+	/**
+	 * Create a new Louvain for the undirected graph.
+	 * @param g the graph with both directions of every edge.
+	 */
+	public Louvain(CompactGraph g) {
+		this.graph = g;
+		this.gamma = 1.0;
+		this.minCommunities = 1;
+		this.parallelism = 1;
+		this.pool = null;
+		this.seed = 0;
+		this.membership = null;
+		this.levels = 0;
+		this.hierarchy = new ArrayList<int[]>();
+	}
+
+	/**
+	 * Set the resolution of the modularity.
+	 * @param g the resolution, 1 for the standard modularity.
+	 */
+	public void setResolution(double g) {
+		gamma = g;
+	}
+
+	/**
+	 * Stop aggregating when there are this many communities or less.
+	 * @param k the number of the communities.
+	 */
+	public void setMinCommunities(int k) {
+		minCommunities = k;
+	}
+
+	/**
+	 * Set the number of the threads of the local moving phase.
+	 * @param threads the number of the threads, 1 for the sequential phase.
+	 */
+	public void setParallelism(int threads) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+		}
+		if(threads == parallelism) {
+			return;
+		}
+		close();
+		parallelism = threads;
+		if(threads > 1) {
+			pool = new ForkJoinPool(threads);
+		}
+	}
+
+	/**
+	 * Stop the threads. A later parallel run starts a new pool.
+	 */
+	@Override
+	public void close() {
+		if(pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Set the seed of the vertex order of the parallel coloring.
+	 * @param randomSeed the seed.
+	 */
+	public void setSeed(long randomSeed) {
+		seed = randomSeed;
+	}
+
+	/**
+	 * Find the communities.
+	 * @return The community of every dense vertex, numbered 0..count-1.
+	 */
+	public int[] run() {
+		int n = graph.getNumVertices();
+		membership = new int[n];
+		for(int v = 0; v < n; v++) {
+			membership[v] = v;
+		}
+		levels = 0;
+		hierarchy = new ArrayList<int[]>();
+		CompactGraph level = graph;
+		int count = n;
+		while(count > minCommunities) {
+			int[] community = new int[level.getNumVertices()];
+			boolean moved = moveNodes(level, community);
+			count = renumber(community);
+			for(int v = 0; v < n; v++) {
+				membership[v] = community[membership[v]];
+			}
+			hierarchy.add(community);
+			levels++;
+			if(!moved) {
+				break;
+			}
+			level = aggregate(level, community, count);
+		}
+		return membership;
+	}
+
+	/**
+	 * Get the result of the last run.
+	 * @return The community of every dense vertex.
+	 */
+	public int[] getMembership() {
+		return membership;
+	}
+
+	/**
+	 * Report the number of the levels of the last run.
+	 * @return The number of the levels.
+	 */
+	public int getLevels() {
+		return levels;
+	}
+
+	/**
+	 * Get the communities of one level of the last run.
+	 * @param level the level, 0 for the vertices of the graph.
+	 * @return The community of the next level of every vertex of the level.
+	 */
+	public int[] getLevelCommunities(int level) {
+		return hierarchy.get(level);
+	}
+
+	/**
+	 * Get the hierarchy of the communities of all levels of the last run.
+	 * @return The Dendrogram.
+	 */
+	public Dendrogram getDendrogram() {
+		return new Dendrogram(graph.points(), hierarchy);
+	}
+
+	/**
+	 * Report the modularity of the last run.
+	 * @return The modularity with the resolution of the run.
+	 */
+	public double getModularity() {
+		return Modularity.of(graph, membership, gamma);
+	}
+
+	/**
+	 * The local moving phase: every vertex is moved to the neighbor
+	 * community of the best positive gain until nothing moves.
+	 * @param g the graph of the level.
+	 * @param community the array to fill by the community of every vertex.
+	 * @return true if any vertex was moved.
+	 */
+	boolean moveNodes(CompactGraph g, int[] community) {
+		Level l = new Level(g, community);
+		if(l.total == 0) {
+			return false;
+		}
+		if(parallelism > 1 && l.n > 1) {
+			return moveNodesParallel(l);
+		}
+		Accumulator acc = new Accumulator(l.n);
+		boolean movedAny = false;
+		boolean moved = true;
+		while(moved) {
+			moved = false;
+			for(int v = 0; v < l.n; v++) {
+				int own = community[v];
+				acc.gather(l, v);
+
+				// take the vertex out of its community
+				l.sigmaTot[own] -= l.k[v];
+				l.sigmaIn[own] -= 2 * acc.weight[own] + l.self[v];
+
+				int best = own;
+				double bestGain = acc.weight[own] - gamma * l.sigmaTot[own] * l.k[v] / l.total;
+				for(int i = 1; i < acc.size; i++) {
+					int c = acc.list[i];
+					double gain = acc.weight[c] - gamma * l.sigmaTot[c] * l.k[v] / l.total;
+					if(gain > bestGain + 1e-12) {
+						best = c;
+						bestGain = gain;
+					}
+				}
+
+				l.sigmaTot[best] += l.k[v];
+				l.sigmaIn[best] += 2 * acc.weight[best] + l.self[v];
+				community[v] = best;
+				if(best != own) {
+					moved = true;
+					movedAny = true;
+				}
+				acc.clear();
+			}
+		}
+		return movedAny;
+	}
+
+	/**
+	 * The fast local moving phase: the vertices of the queue are moved to
+	 * the community of the best gain, possibly an empty one, and the
+	 * neighbors of a moved vertex outside of its new community are queued.
+	 * @param l the level with the initial communities.
+	 * @param gamma the resolution.
+	 * @param queue the array of size n starting with the vertices to visit.
+	 * @param queueSize the number of the vertices to visit.
+	 * @return The number of the moves.
+	 */
+	static int moveNodesQueued(Level l, double gamma, int[] queue, int queueSize) {
+		int n = l.n;
+		if(l.total == 0) {
+			return 0;
+		}
+		int[] community = l.community;
+		int[] members = new int[n];
+		for(int v = 0; v < n; v++) {
+			members[community[v]]++;
+		}
+		int[] empty = new int[n];
+		int emptyCount = 0;
+		for(int c = n - 1; c >= 0; c--) {
+			if(members[c] == 0) {
+				empty[emptyCount++] = c;
+			}
+		}
+
+		// the circular queue of the vertices
+		boolean[] queued = new boolean[n];
+		for(int i = 0; i < queueSize; i++) {
+			queued[queue[i]] = true;
+		}
+		int head = 0;
+		int moves = 0;
+
+		Accumulator acc = new Accumulator(n);
+		while(queueSize > 0) {
+			int v = queue[head];
+			head = (head + 1) % n;
+			queueSize--;
+			queued[v] = false;
+
+			int own = community[v];
+			acc.gather(l, v);
+			l.sigmaTot[own] -= l.k[v];
+			l.sigmaIn[own] -= 2 * acc.weight[own] + l.self[v];
+			members[own]--;
+
+			int best = own;
+			double bestGain = acc.weight[own] - gamma * l.sigmaTot[own] * l.k[v] / l.total;
+			for(int i = 1; i < acc.size; i++) {
+				int c = acc.list[i];
+				double gain = acc.weight[c] - gamma * l.sigmaTot[c] * l.k[v] / l.total;
+				if(gain > bestGain + 1e-12) {
+					best = c;
+					bestGain = gain;
+				}
+			}
+			// an empty community gains 0
+			if(bestGain < -1e-12 && members[own] > 0 && emptyCount > 0) {
+				best = empty[--emptyCount];
+			}
+			double toBest = best == own ? acc.weight[own] : Math.max(acc.weight[best], 0);
+			acc.clear();
+
+			l.sigmaTot[best] += l.k[v];
+			l.sigmaIn[best] += 2 * toBest + l.self[v];
+			members[best]++;
+			community[v] = best;
+			if(best == own) {
+				continue;
+			}
+			moves++;
+			if(members[own] == 0) {
+				empty[emptyCount++] = own;
+			}
+			for(int e = l.offsets[v]; e < l.offsets[v + 1]; e++) {
+				int t = l.targets[e];
+				if(!queued[t] && community[t] != best) {
+					queued[t] = true;
+					queue[(head + queueSize) % n] = t;
+					queueSize++;
+				}
+			}
+		}
+		return moves;
+	}
+
+	/**
+	 * The parallel local moving phase over the color classes.
+	 * @param l the level.
+	 * @return true if any vertex was moved.
+	 */
+	private boolean moveNodesParallel(Level l) {
+		int n = l.n;
+		int[] byColor = new int[n];
+		int[] colorOffsets = colorClasses(l.offsets, l.targets, seed, byColor);
+
+		// the decision of every vertex: the target and the weights to it and to its own community
+		int[] target = new int[n];
+		double[] toTarget = new double[n];
+		double[] toOwn = new double[n];
+
+		int threads = Math.min(parallelism, n);
+		Accumulator[] accs = new Accumulator[threads];
+		for(int i = 0; i < threads; i++) {
+			accs[i] = new Accumulator(n);
+		}
+		if(pool == null) {
+			pool = new ForkJoinPool(parallelism);
+		}
+		boolean movedAny = false;
+		boolean moved = true;
+		while(moved) {
+			moved = false;
+			for(int c = 0; c + 1 < colorOffsets.length; c++) {
+				int from = colorOffsets[c];
+				int to = colorOffsets[c + 1];
+				AtomicInteger cursor = new AtomicInteger(from);
+				Decider[] deciders = new Decider[threads];
+				for(int i = 0; i < threads; i++) {
+					deciders[i] = new Decider(l, accs[i], byColor, cursor, to, target, toTarget, toOwn);
+					pool.execute(deciders[i]);
+				}
+				for(Decider d : deciders) {
+					d.join();
+				}
+				// apply the moves which still gain in the vertex order
+				for(int i = from; i < to; i++) {
+					int v = byColor[i];
+					int own = l.community[v];
+					int best = target[v];
+					if(best == own) {
+						continue;
+					}
+					double stay = toOwn[v] - gamma * (l.sigmaTot[own] - l.k[v]) * l.k[v] / l.total;
+					double gain = toTarget[v] - gamma * l.sigmaTot[best] * l.k[v] / l.total;
+					if(gain > stay + 1e-12) {
+						l.sigmaTot[own] -= l.k[v];
+						l.sigmaIn[own] -= 2 * toOwn[v] + l.self[v];
+						l.sigmaTot[best] += l.k[v];
+						l.sigmaIn[best] += 2 * toTarget[v] + l.self[v];
+						l.community[v] = best;
+						moved = true;
+						movedAny = true;
+					}
+				}
+			}
+		}
+		return movedAny;
+	}
+
+	/**
+	 * Color the vertices greedily in the seeded random order,
+	 * so that no two neighbors share a color.
+	 * @param offsets the start of the edges of every vertex.
+	 * @param targets the ends of the edges.
+	 * @param seed the seed of the order.
+	 * @param byColor the array to fill by the vertices sorted by the color.
+	 * @return The offsets of the color classes in byColor.
+	 */
+	static int[] colorClasses(int[] offsets, int[] targets, long seed, int[] byColor) {
+		int n = offsets.length - 1;
+		int[] order = new int[n];
+		for(int v = 0; v < n; v++) {
+			order[v] = v;
+		}
+		Random random = new Random(seed);
+		for(int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int t = order[i];
+			order[i] = order[j];
+			order[j] = t;
+		}
+		int[] color = new int[n];
+		Arrays.fill(color, -1);
+		// stamp[c] == v marks the color c as used by a neighbor of v
+		int[] stamp = new int[n + 1];
+		Arrays.fill(stamp, -1);
+		int colors = 0;
+		for(int v : order) {
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				int t = targets[e];
+				if(t != v && color[t] >= 0) {
+					stamp[color[t]] = v;
+				}
+			}
+			int c = 0;
+			while(stamp[c] == v) {
+				c++;
+			}
+			color[v] = c;
+			colors = Math.max(colors, c + 1);
+		}
+		int[] classOffsets = new int[colors + 1];
+		for(int v = 0; v < n; v++) {
+			classOffsets[color[v] + 1]++;
+		}
+		for(int c = 0; c < colors; c++) {
+			classOffsets[c + 1] += classOffsets[c];
+		}
+		int[] next = Arrays.copyOf(classOffsets, colors);
+		for(int v = 0; v < n; v++) {
+			byColor[next[color[v]]++] = v;
+		}
+		return classOffsets;
+	}
+
+	/**
+	 * Renumber the communities by 0..count-1 in the order of their first vertices.
+	 * @param community the community of every vertex, changed in place.
+	 * @return The number of the communities.
+	 */
+	static int renumber(int[] community) {
+		int[] map = new int[community.length];
+		Arrays.fill(map, -1);
+		int count = 0;
+		for(int v = 0; v < community.length; v++) {
+			int c = community[v];
+			if(map[c] < 0) {
+				map[c] = count++;
+			}
+			community[v] = map[c];
+		}
+		return count;
+	}
+
+	/**
+	 * Build the graph of the communities in O(V+E) by counting sorts.
+	 * The edges between two communities are merged into one edge and
+	 * the edges inside a community become its self-loop.
+	 * @param g the graph of the level, symmetric.
+	 * @param community the community of every vertex, 0..count-1.
+	 * @param count the number of the communities.
+	 * @return The graph of the next level.
+	 */
+	static CompactGraph aggregate(CompactGraph g, int[] community, int count) {
+		int[] offsets = g.offsets();
+		int[] targets = g.targets();
+		int[] weights = g.weights();
+		int n = offsets.length - 1;
+
+		// the members of every community
+		int[] memberOffsets = new int[count + 1];
+		for(int v = 0; v < n; v++) {
+			memberOffsets[community[v] + 1]++;
+		}
+		for(int c = 0; c < count; c++) {
+			memberOffsets[c + 1] += memberOffsets[c];
+		}
+		int[] members = new int[n];
+		int[] next = Arrays.copyOf(memberOffsets, count);
+		for(int v = 0; v < n; v++) {
+			members[next[community[v]]++] = v;
+		}
+
+		// the merged edges of every community in the order of the first appearance;
+		// slot[d] is the position of the edge to d in the current row or -1
+		int[] slot = new int[count];
+		Arrays.fill(slot, -1);
+		int[] rowOffsets = new int[count + 1];
+		int[] rowTargets = new int[targets.length];
+		int[] rowWeights = new int[targets.length];
+		int size = 0;
+		for(int c = 0; c < count; c++) {
+			for(int i = memberOffsets[c]; i < memberOffsets[c + 1]; i++) {
+				int v = members[i];
+				for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+					int d = community[targets[e]];
+					if(slot[d] < 0) {
+						slot[d] = size;
+						rowTargets[size++] = d;
+					}
+					rowWeights[slot[d]] += weights[e];
+				}
+			}
+			rowOffsets[c + 1] = size;
+			for(int e = rowOffsets[c]; e < size; e++) {
+				slot[rowTargets[e]] = -1;
+			}
+		}
+
+		// the transpose by a counting sort has the rows sorted by the target,
+		// and it is the same graph as the communities graph is symmetric
+		int[] sortedOffsets = new int[count + 1];
+		for(int e = 0; e < size; e++) {
+			sortedOffsets[rowTargets[e] + 1]++;
+		}
+		for(int c = 0; c < count; c++) {
+			sortedOffsets[c + 1] += sortedOffsets[c];
+		}
+		int[] sortedTargets = new int[size];
+		int[] sortedWeights = new int[size];
+		next = Arrays.copyOf(sortedOffsets, count);
+		for(int c = 0; c < count; c++) {
+			for(int e = rowOffsets[c]; e < rowOffsets[c + 1]; e++) {
+				int pos = next[rowTargets[e]]++;
+				sortedTargets[pos] = c;
+				sortedWeights[pos] = rowWeights[e];
+			}
+		}
+		int[] points = new int[count];
+		for(int c = 0; c < count; c++) {
+			points[c] = c;
+		}
+		return new CompactGraph(points, sortedOffsets, sortedTargets, sortedWeights);
+	}
+
+	/**
+	 * The arrays of the local moving phase of one level.
+	 */
+	static class Level {
+		final int[] offsets;
+		final int[] targets;
+		final int[] weights;
+		final int n;
+		final int[] community;
+		final double[] k;
+		final double[] self;
+		final double[] sigmaTot;
+		final double[] sigmaIn;
+		double total;
+
+		Level(CompactGraph g, int[] community) {
+			offsets = g.offsets();
+			targets = g.targets();
+			weights = g.weights();
+			n = offsets.length - 1;
+			this.community = community;
+			k = new double[n];
+			self = new double[n];
+			sigmaTot = new double[n];
+			sigmaIn = new double[n];
+			total = 0;
+			for(int v = 0; v < n; v++) {
+				community[v] = v;
+				for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+					k[v] += weights[e];
+					if(targets[e] == v) {
+						self[v] += weights[e];
+					}
+				}
+				sigmaTot[v] = k[v];
+				sigmaIn[v] = self[v];
+				total += k[v];
+			}
+		}
+
+		/**
+		 * Start from the given communities instead of the single vertices.
+		 * @param initial the community of every vertex, 0..n-1.
+		 */
+		void assign(int[] initial) {
+			Arrays.fill(sigmaTot, 0);
+			Arrays.fill(sigmaIn, 0);
+			for(int v = 0; v < n; v++) {
+				int c = initial[v];
+				community[v] = c;
+				sigmaTot[c] += k[v];
+			}
+			for(int v = 0; v < n; v++) {
+				int c = community[v];
+				for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+					if(community[targets[e]] == c) {
+						sigmaIn[c] += weights[e];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The sparse accumulator of the weights from a vertex to the neighbor
+	 * communities. list[0] is always the own community of the vertex.
+	 */
+	static class Accumulator {
+		final double[] weight;
+		final int[] list;
+		int size;
+
+		Accumulator(int n) {
+			weight = new double[n];
+			list = new int[n];
+			Arrays.fill(weight, -1);
+		}
+
+		void gather(Level l, int v) {
+			int own = l.community[v];
+			size = 0;
+			weight[own] = 0;
+			list[size++] = own;
+			for(int e = l.offsets[v]; e < l.offsets[v + 1]; e++) {
+				int t = l.targets[e];
+				if(t == v) {
+					continue;
+				}
+				int c = l.community[t];
+				if(weight[c] < 0) {
+					weight[c] = 0;
+					list[size++] = c;
+				}
+				weight[c] += l.weights[e];
+			}
+		}
+
+		void clear() {
+			for(int i = 0; i < size; i++) {
+				weight[list[i]] = -1;
+			}
+			size = 0;
+		}
+	}
+
+	/**
+	 * The worker takes the next vertex of a color class and decides
+	 * its best community against the totals before the class.
+	 */
+	private class Decider extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final Level l;
+		final Accumulator acc;
+		final int[] byColor;
+		final AtomicInteger cursor;
+		final int end;
+		final int[] target;
+		final double[] toTarget;
+		final double[] toOwn;
+
+		Decider(Level l, Accumulator acc, int[] byColor, AtomicInteger cursor, int end,
+				int[] target, double[] toTarget, double[] toOwn) {
+			this.l = l;
+			this.acc = acc;
+			this.byColor = byColor;
+			this.cursor = cursor;
+			this.end = end;
+			this.target = target;
+			this.toTarget = toTarget;
+			this.toOwn = toOwn;
+		}
+
+		@Override
+		protected void compute() {
+			int i;
+			while((i = cursor.getAndIncrement()) < end) {
+				int v = byColor[i];
+				int own = l.community[v];
+				acc.gather(l, v);
+				int best = own;
+				double bestGain = acc.weight[own] - gamma * (l.sigmaTot[own] - l.k[v]) * l.k[v] / l.total;
+				for(int j = 1; j < acc.size; j++) {
+					int c = acc.list[j];
+					double gain = acc.weight[c] - gamma * l.sigmaTot[c] * l.k[v] / l.total;
+					if(gain > bestGain + 1e-12) {
+						best = c;
+						bestGain = gain;
+					}
+				}
+				target[v] = best;
+				toTarget[v] = acc.weight[best];
+				toOwn[v] = acc.weight[own];
+				acc.clear();
+			}
+		}
+	}
+}
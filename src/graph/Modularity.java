@@ -0,0 +1,139 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * Modularity of a partition of a CompactGraph in O(V+E).
+ *
+ * Q = sum over communities c of ( sigmaIn(c)/2m - gamma*(sigmaTot(c)/2m)^2 ),
+ * where 2m is the sum of the weights of all edges (every undirected edge is
+ * stored in both directions), sigmaIn(c) is the sum of the weights of the
+ * edges inside c and sigmaTot(c) is the sum of the weights of the edges
+ * attached to the vertices of c. A self-loop is stored once and its weight
+ * already counts both ends. gamma is the resolution: the bigger it is,
+ * the smaller the communities of the best partition.
+ *
+ */
+package graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+public class Modularity {
+
+	/**
+	 * The modularity with the resolution 1.
+	 * @param g the graph.
+	 * @param community the community of every dense vertex, 0..n-1.
+	 * @return The modularity.
+	 */
+	public static double of(CompactGraph g, int[] community) {
+		return of(g, community, 1.0);
+	}
+
+	/**
+	 * The modularity with the resolution gamma.
+	 * @param g the graph.
+	 * @param community the community of every dense vertex, 0..n-1.
+	 * @param gamma the resolution.
+	 * @return The modularity.
+	 */
+	public static double of(CompactGraph g, int[] community, double gamma) {
+		int[] offsets = g.offsets();
+		int[] targets = g.targets();
+		int[] weights = g.weights();
+		int n = offsets.length - 1;
+		double[] sigmaIn = new double[n];
+		double[] sigmaTot = new double[n];
+		double total = 0;
+		for(int v = 0; v < n; v++) {
+			int c = community[v];
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				double w = weights[e];
+				sigmaTot[c] += w;
+				if(community[targets[e]] == c) {
+					sigmaIn[c] += w;
+				}
+			}
+		}
+		for(int c = 0; c < n; c++) {
+			total += sigmaTot[c];
+		}
+		return of(sigmaIn, sigmaTot, n, total, gamma);
+	}
+
+	/**
+	 * The modularity from the totals of the communities.
+	 * @param sigmaIn the sum of the weights of the edges inside every community.
+	 * @param sigmaTot the sum of the weights of the edges attached to every community.
+	 * @param count the number of the communities.
+	 * @param total the sum of the weights of all edges, 2m.
+	 * @param gamma the resolution.
+	 * @return The modularity.
+	 */
+	public static double of(double[] sigmaIn, double[] sigmaTot, int count, double total, double gamma) {
+		if(total == 0) {
+			return 0;
+		}
+		double q = 0;
+		for(int c = 0; c < count; c++) {
+			double tot = sigmaTot[c] / total;
+			q += sigmaIn[c] / total - gamma * tot * tot;
+		}
+		return q;
+	}
+
+	/**
+	 * The modularity of the communities given by the lists of the vertices.
+	 * The vertices missing in the lists are single communities.
+	 * @param g the graph.
+	 * @param communities the lists of the numbers of the vertices of every community.
+	 * @param gamma the resolution.
+	 * @return The modularity.
+	 */
+	public static double of(CompactGraph g, Collection<List<Integer>> communities, double gamma) {
+		int n = g.getNumVertices();
+		int[] community = new int[n];
+		Arrays.fill(community, -1);
+		int c = 0;
+		for(List<Integer> list : communities) {
+			for(Integer point : list) {
+				int v = g.indexOf(point);
+				if(v >= 0) {
+					community[v] = c;
+				}
+			}
+			c++;
+		}
+		return of(g, labels(community), gamma);
+	}
+
+	/**
+	 * Renumber the communities by 0..count-1, giving own communities to
+	 * the vertices without one (-1).
+	 * @param community the community of every vertex.
+	 * @return The new array of the communities.
+	 */
+	static int[] labels(int[] community) {
+		int n = community.length;
+		int max = -1;
+		for(int v = 0; v < n; v++) {
+			max = Math.max(max, community[v]);
+		}
+		int[] map = new int[max + 1];
+		Arrays.fill(map, -1);
+		int[] label = new int[n];
+		int next = 0;
+		for(int v = 0; v < n; v++) {
+			int c = community[v];
+			if(c < 0) {
+				label[v] = next++;
+			} else {
+				if(map[c] < 0) {
+					map[c] = next++;
+				}
+				label[v] = map[c];
+			}
+		}
+		return label;
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * The state of the shortest path queries of one thread.
+ *
+ * The graph and the lengths of the edges are only read, so any number
+ * of PathQuery objects share them. Everything a search writes, the
+ * distances, the parents and the frontiers, belongs to the PathQuery
+ * and is reused by its next query, so one PathQuery must not be used
+ * by two threads at once.
+ *
+ */
+package graph;
+
+import java.util.List;
+
+public class PathQuery {
+	private final CompactGraph graph;
+	private final double[] lengths;
+	private BreadthFirst breadthFirst;
+	private Dijkstra dijkstra;
+
+	/**
+	 * Create a new PathQuery on the graph.
+	 * @param g the graph, not changed while the queries run.
+	 * @param lengths the length of every edge parallel to the targets,
+	 *   null to count the edges.
+	 */
+	public PathQuery(CompactGraph g, double[] lengths) {
+		// build the graph before the threads read it
+		g.getNumVertices();
+		this.graph = g;
+		this.lengths = lengths;
+		this.breadthFirst = null;
+		this.dijkstra = null;
+	}
+
+	/**
+	 * Create a new PathQuery on the graph and the lengths of another one.
+	 * @param other the PathQuery to share the graph with.
+	 */
+	public PathQuery(PathQuery other) {
+		this.graph = other.graph;
+		this.lengths = other.lengths;
+		this.breadthFirst = null;
+		this.dijkstra = null;
+	}
+
+	/**
+	 * Report whether two PathQuery objects search the same graph.
+	 * @param other the other PathQuery.
+	 * @return True if the graph and the lengths are the same.
+	 */
+	boolean sharesGraph(PathQuery other) {
+		return graph == other.graph && lengths == other.lengths;
+	}
+
+	/**
+	 * Get the graph of the queries.
+	 * @return The graph.
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Report whether the paths are found by the number of the edges.
+	 * @return True if the lengths are not used.
+	 */
+	public boolean isUnweighted() {
+		return lengths == null;
+	}
+
+	/**
+	 * Find a shortest path between two vertices by the bidirectional
+	 * breadth-first search or, with the lengths, by Dijkstra's algorithm.
+	 * @param start the number of the start vertex.
+	 * @param goal the number of the goal vertex.
+	 * @return The numbers of the vertices of the path from start to goal
+	 *   including both, an empty list if there is no path.
+	 */
+	public List<Integer> path(int start, int goal) {
+		if(lengths == null) {
+			if(breadthFirst == null) {
+				breadthFirst = new BreadthFirst(graph);
+			}
+			return breadthFirst.path(start, goal);
+		}
+		if(dijkstra == null) {
+			dijkstra = new Dijkstra(graph, lengths);
+		}
+		return dijkstra.path(start, goal);
+	}
+}
@@ -0,0 +1,187 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * The Louvain method for several resolutions at once on one graph.
+ *
+ * The graph is loaded and built once and only read by the runs, so every
+ * resolution is a task of a ForkJoinPool with its own Louvain and its own
+ * level arrays. The levels can't be shared between the resolutions: the
+ * very first local moving already depends on gamma. The pool is created
+ * at the first parallel run and serves every run until close().
+ *
+ */
+package graph;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ResolutionSweep implements AutoCloseable {
+	private final CompactGraph graph;
+	private int parallelism;
+	// the threads of the runs, null until the first parallel run
+	private ForkJoinPool pool;
+
+	/**
+	 * Create a new ResolutionSweep for the undirected graph.
+	 * @param g the graph with both directions of every edge.
+	 */
+	public ResolutionSweep(CompactGraph g) {
+		this.graph = g;
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+		this.pool = null;
+	}
+
+	/**
+	 * Set the number of the resolutions run at once.
+	 * @param threads the number of the threads, 1 for one after another.
+	 */
+	public void setParallelism(int threads) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+		}
+		if(threads == parallelism) {
+			return;
+		}
+		close();
+		parallelism = threads;
+	}
+
+	/**
+	 * Stop the threads. A later parallel run starts a new pool.
+	 */
+	@Override
+	public void close() {
+		if(pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Find the communities for every resolution.
+	 * @param resolutions the resolutions.
+	 * @return The partition of every resolution in the same order.
+	 */
+	public List<Partition> run(double... resolutions) {
+		// build the graph before the threads read it
+		graph.getNumVertices();
+		Partition[] result = new Partition[resolutions.length];
+		Task[] tasks = new Task[resolutions.length];
+		for(int i = 0; i < resolutions.length; i++) {
+			tasks[i] = new Task(resolutions[i], result, i);
+		}
+		if(parallelism == 1 || resolutions.length < 2) {
+			for(Task t : tasks) {
+				t.compute();
+			}
+		} else {
+			if(pool == null) {
+				pool = new ForkJoinPool(parallelism);
+			}
+			for(Task t : tasks) {
+				pool.execute(t);
+			}
+			for(Task t : tasks) {
+				t.join();
+			}
+		}
+		List<Partition> partitions = new ArrayList<Partition>(resolutions.length);
+		for(Partition p : result) {
+			partitions.add(p);
+		}
+		return partitions;
+	}
+
+	/**
+	 * The communities found for one resolution.
+	 */
+	public class Partition {
+		private final double resolution;
+		private final int[] membership;
+		private final double modularity;
+		private final int count;
+
+		Partition(double resolution, int[] membership, double modularity, int count) {
+			this.resolution = resolution;
+			this.membership = membership;
+			this.modularity = modularity;
+			this.count = count;
+		}
+
+		/**
+		 * Get the resolution.
+		 * @return The resolution of the run.
+		 */
+		public double getResolution() {
+			return resolution;
+		}
+
+		/**
+		 * Get the community of every dense vertex.
+		 * @return The communities numbered 0..count-1.
+		 */
+		public int[] getMembership() {
+			return membership;
+		}
+
+		/**
+		 * Report the modularity with the resolution of the run.
+		 * @return The modularity.
+		 */
+		public double getModularity() {
+			return modularity;
+		}
+
+		/**
+		 * Report the number of the communities.
+		 * @return The number of the communities.
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Get the vertices of every community.
+		 * @return The set of the lists of the vertex numbers of every community.
+		 */
+		public HashSet<List<Integer>> getCommunities() {
+			return graph.toCommunityLists(membership);
+		}
+
+		@Override
+		public String toString() {
+			return "gamma " + resolution + ": " + count + " communities, modularity " + modularity;
+		}
+	}
+
+	/**
+	 * The run for one resolution.
+	 */
+	private class Task extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final double resolution;
+		final Partition[] result;
+		final int index;
+
+		Task(double resolution, Partition[] result, int index) {
+			this.resolution = resolution;
+			this.result = result;
+			this.index = index;
+		}
+
+		@Override
+		protected void compute() {
+			Louvain louvain = new Louvain(graph);
+			louvain.setResolution(resolution);
+			int[] membership = louvain.run();
+			int count = 0;
+			for(int c : membership) {
+				count = Math.max(count, c + 1);
+			}
+			result[index] = new Partition(resolution, membership, louvain.getModularity(), count);
+		}
+	}
+}
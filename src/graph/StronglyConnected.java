@@ -0,0 +1,427 @@
+/**
+ * @author Aleksandr Solnyshkov.
+ *
+ * Strongly connected components of a CompactGraph by the Tarjan
+ * algorithm in one pass of O(V+E).
+ *
+ * The recursion is replaced by an explicit int stack of the vertices
+ * being visited with the position of the next edge of every vertex,
+ * so the depth of the search is limited only by the memory. A vertex
+ * is on the Tarjan stack while it is visited and has no component yet.
+ *
+ * The components are numbered in the reverse topological order: no
+ * edge goes from a component to one with a bigger number. The graphs
+ * of the components are built only when they are asked for.
+ *
+ * With the parallelism above one the components are found in the steps
+ * of the Multistep method instead:
+ * - the trimming: a vertex without incoming or outgoing edges from the
+ *   remaining vertices is a component alone, repeatedly;
+ * - the forward-backward search from the pivot of the biggest product of
+ *   the degrees: the vertices reached both forward and backward are the
+ *   component of the pivot, normally the giant one. Both searches go by
+ *   levels, and the threads expand the parts of every level at once;
+ * - the trimming again and the Tarjan pass over the remaining vertices,
+ *   which are the small components.
+ * The numbers of the components are not in the topological order then.
+ *
+ */
+package graph;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class StronglyConnected {
+	private static final int FORWARD = 1;
+	private static final int BACKWARD = 2;
+	// the frontiers smaller than this are expanded by one thread
+	private static final int PARALLEL_FRONTIER = 1024;
+	private static final int CHUNK = 256;
+
+	private final CompactGraph graph;
+	private int parallelism;
+	private int[] component;
+	private int count;
+
+	/**
+	 * Create a new StronglyConnected for the directed graph.
+	 * @param g the graph.
+	 */
+	public StronglyConnected(CompactGraph g) {
+		this.graph = g;
+		this.parallelism = 1;
+		this.component = null;
+		this.count = 0;
+	}
+
+	/**
+	 * Set the number of the threads.
+	 * @param threads the number of the threads, 1 for the single Tarjan pass.
+	 */
+	public void setParallelism(int threads) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+		}
+		parallelism = threads;
+	}
+
+	/**
+	 * Find the components.
+	 * @return The component of every dense vertex, numbered 0..count-1.
+	 */
+	public int[] run() {
+		int n = graph.getNumVertices();
+		int[] offsets = graph.offsets();
+		int[] targets = graph.targets();
+		component = new int[n];
+		Arrays.fill(component, -1);
+		if(parallelism == 1) {
+			count = tarjan(offsets, targets, component, 0);
+			return component;
+		}
+
+		int[] rOffsets = graph.reverseOffsets();
+		int[] rTargets = graph.reverseTargets();
+		count = trim(offsets, targets, rOffsets, rTargets, component, 0);
+		int pivot = -1;
+		long best = 0;
+		for(int v = 0; v < n; v++) {
+			long product = (long)(offsets[v + 1] - offsets[v]) * (rOffsets[v + 1] - rOffsets[v]);
+			if(component[v] < 0 && product > best) {
+				pivot = v;
+				best = product;
+			}
+		}
+		if(pivot >= 0) {
+			AtomicIntegerArray mark = new AtomicIntegerArray(n);
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				reach(pool, pivot, offsets, targets, mark, FORWARD, 0);
+				reach(pool, pivot, rOffsets, rTargets, mark, BACKWARD, FORWARD);
+			} finally {
+				pool.shutdown();
+			}
+			for(int v = 0; v < n; v++) {
+				if(mark.get(v) == (FORWARD | BACKWARD)) {
+					component[v] = count;
+				}
+			}
+			count++;
+			count = trim(offsets, targets, rOffsets, rTargets, component, count);
+		}
+		count = tarjan(offsets, targets, component, count);
+		return component;
+	}
+
+	/**
+	 * The Tarjan pass over the vertices without a component yet.
+	 * @param offsets the start of the edges of every vertex.
+	 * @param targets the ends of the edges.
+	 * @param component the component of every vertex or -1, filled.
+	 * @param count the number of the components found before.
+	 * @return The number of the components.
+	 */
+	static int tarjan(int[] offsets, int[] targets, int[] component, int count) {
+		int n = component.length;
+		int[] index = new int[n];
+		Arrays.fill(index, -1);
+		int[] low = new int[n];
+		int[] stack = new int[n];
+		int top = 0;
+		int[] path = new int[n];
+		int[] cursor = new int[n];
+		int next = 0;
+		for(int s = 0; s < n; s++) {
+			if(index[s] >= 0 || component[s] >= 0) {
+				continue;
+			}
+			int depth = 0;
+			index[s] = next;
+			low[s] = next++;
+			stack[top++] = s;
+			cursor[s] = offsets[s];
+			path[depth++] = s;
+			while(depth > 0) {
+				int v = path[depth - 1];
+				if(cursor[v] < offsets[v + 1]) {
+					int t = targets[cursor[v]++];
+					if(index[t] < 0 && component[t] < 0) {
+						index[t] = next;
+						low[t] = next++;
+						stack[top++] = t;
+						cursor[t] = offsets[t];
+						path[depth++] = t;
+					} else if(index[t] >= 0 && component[t] < 0) {
+						low[v] = Math.min(low[v], index[t]);
+					}
+					continue;
+				}
+				depth--;
+				if(low[v] == index[v]) {
+					int w;
+					do {
+						w = stack[--top];
+						component[w] = count;
+					} while(w != v);
+					count++;
+				}
+				if(depth > 0) {
+					int u = path[depth - 1];
+					low[u] = Math.min(low[u], low[v]);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Give own components to the vertices without incoming or outgoing
+	 * edges from the vertices without a component, repeatedly.
+	 * @param offsets the start of the edges of every vertex.
+	 * @param targets the ends of the edges.
+	 * @param rOffsets the start of the reversed edges of every vertex.
+	 * @param rTargets the ends of the reversed edges.
+	 * @param component the component of every vertex or -1, filled.
+	 * @param count the number of the components found before.
+	 * @return The number of the components.
+	 */
+	private static int trim(int[] offsets, int[] targets, int[] rOffsets, int[] rTargets,
+			int[] component, int count) {
+		int n = component.length;
+		int[] in = new int[n];
+		int[] out = new int[n];
+		for(int v = 0; v < n; v++) {
+			if(component[v] >= 0) {
+				continue;
+			}
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				int t = targets[e];
+				if(component[t] < 0) {
+					out[v]++;
+					in[t]++;
+				}
+			}
+		}
+		int[] queue = new int[n];
+		int head = 0;
+		int tail = 0;
+		for(int v = 0; v < n; v++) {
+			if(component[v] < 0 && (in[v] == 0 || out[v] == 0)) {
+				component[v] = count++;
+				queue[tail++] = v;
+			}
+		}
+		while(head < tail) {
+			int v = queue[head++];
+			for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+				int t = targets[e];
+				if(component[t] < 0 && --in[t] == 0) {
+					component[t] = count++;
+					queue[tail++] = t;
+				}
+			}
+			for(int e = rOffsets[v]; e < rOffsets[v + 1]; e++) {
+				int s = rTargets[e];
+				if(component[s] < 0 && --out[s] == 0) {
+					component[s] = count++;
+					queue[tail++] = s;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Mark the vertices without a component reached from the pivot
+	 * by the level-synchronous search.
+	 * @param pool the threads.
+	 * @param pivot the start vertex.
+	 * @param offsets the start of the edges of every vertex.
+	 * @param targets the ends of the edges.
+	 * @param mark the marks of the vertices.
+	 * @param bit the mark of this search.
+	 * @param required the marks a vertex needs to be reached.
+	 */
+	private void reach(ForkJoinPool pool, int pivot, int[] offsets, int[] targets,
+			AtomicIntegerArray mark, int bit, int required) {
+		mark.set(pivot, mark.get(pivot) | bit);
+		int[] frontier = {pivot};
+		int size = 1;
+		while(size > 0) {
+			int tasks = size < PARALLEL_FRONTIER ? 1 : parallelism;
+			AtomicInteger cursor = new AtomicInteger();
+			Expander[] expanders = new Expander[tasks];
+			for(int i = 0; i < tasks; i++) {
+				expanders[i] = new Expander(offsets, targets, mark, bit, required, frontier, size, cursor);
+			}
+			if(tasks == 1) {
+				expanders[0].compute();
+			} else {
+				for(Expander x : expanders) {
+					pool.execute(x);
+				}
+				for(Expander x : expanders) {
+					x.join();
+				}
+			}
+			int nextSize = 0;
+			for(Expander x : expanders) {
+				nextSize += x.size;
+			}
+			int[] next = new int[nextSize];
+			nextSize = 0;
+			for(Expander x : expanders) {
+				System.arraycopy(x.found, 0, next, nextSize, x.size);
+				nextSize += x.size;
+			}
+			frontier = next;
+			size = nextSize;
+		}
+	}
+
+	/**
+	 * Report the number of the components of the last run.
+	 * @return The number of the components.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Get the components of the last run, running it if needed.
+	 * @return The component of every dense vertex.
+	 */
+	public int[] getComponents() {
+		if(component == null) {
+			run();
+		}
+		return component;
+	}
+
+	/**
+	 * Get the graphs of the components. A graph of a component has its
+	 * vertices only, like the ones of Dfs, and is built on the first get.
+	 * @return The list of the graphs of the components.
+	 */
+	public List<Graph> getGraphs() {
+		int[] c = getComponents();
+		int n = c.length;
+		int[] memberOffsets = new int[count + 1];
+		for(int v = 0; v < n; v++) {
+			memberOffsets[c[v] + 1]++;
+		}
+		for(int i = 0; i < count; i++) {
+			memberOffsets[i + 1] += memberOffsets[i];
+		}
+		int[] members = new int[n];
+		int[] next = Arrays.copyOf(memberOffsets, count);
+		for(int v = 0; v < n; v++) {
+			members[next[c[v]]++] = graph.getPoint(v);
+		}
+		return new ComponentList(memberOffsets, members);
+	}
+
+	/**
+	 * The list of the graphs of the components built on demand.
+	 */
+	private static class ComponentList extends AbstractList<Graph> {
+		private final int[] memberOffsets;
+		private final int[] members;
+		private final Graph[] graphs;
+
+		ComponentList(int[] memberOffsets, int[] members) {
+			this.memberOffsets = memberOffsets;
+			this.members = members;
+			this.graphs = new Graph[memberOffsets.length - 1];
+		}
+
+		@Override
+		public Graph get(int i) {
+			if(graphs[i] == null) {
+				// the members are in the ascending order of the dense vertices
+				int size = memberOffsets[i + 1] - memberOffsets[i];
+				int[] points = Arrays.copyOfRange(members, memberOffsets[i], memberOffsets[i + 1]);
+				graphs[i] = new CompactGraph(points, new int[size + 1], new int[0], new int[0]);
+			}
+			return graphs[i];
+		}
+
+		@Override
+		public int size() {
+			return graphs.length;
+		}
+	}
+
+	/**
+	 * The worker takes the chunks of the frontier and marks the
+	 * unmarked ends of their edges, collecting the next frontier.
+	 */
+	private class Expander extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final int[] offsets;
+		final int[] targets;
+		final AtomicIntegerArray mark;
+		final int bit;
+		final int required;
+		final int[] frontier;
+		final int frontierSize;
+		final AtomicInteger cursor;
+		int[] found;
+		int size;
+
+		Expander(int[] offsets, int[] targets, AtomicIntegerArray mark, int bit, int required,
+				int[] frontier, int frontierSize, AtomicInteger cursor) {
+			this.offsets = offsets;
+			this.targets = targets;
+			this.mark = mark;
+			this.bit = bit;
+			this.required = required;
+			this.frontier = frontier;
+			this.frontierSize = frontierSize;
+			this.cursor = cursor;
+			this.found = new int[16];
+			this.size = 0;
+		}
+
+		@Override
+		protected void compute() {
+			int from;
+			while((from = cursor.getAndAdd(CHUNK)) < frontierSize) {
+				int to = Math.min(from + CHUNK, frontierSize);
+				for(int i = from; i < to; i++) {
+					int v = frontier[i];
+					for(int e = offsets[v]; e < offsets[v + 1]; e++) {
+						int t = targets[e];
+						if(component[t] < 0 && tryMark(t)) {
+							if(size == found.length) {
+								found = Arrays.copyOf(found, 2 * size);
+							}
+							found[size++] = t;
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Set the bit of the vertex having the required marks.
+		 * @param t the vertex.
+		 * @return true if this thread set the bit.
+		 */
+		private boolean tryMark(int t) {
+			int m = mark.get(t);
+			while((m & bit) == 0 && (m & required) == required) {
+				if(mark.compareAndSet(t, m, m | bit)) {
+					return true;
+				}
+				m = mark.get(t);
+			}
+			return false;
+		}
+	}
+}
@@ -5,11 +5,14 @@ import java.util.List;
 import java.util.Set;
 
 import graph.CapGraph;
+import graph.CompactGraph;
+import graph.Modularity;
 import jgrapht.grader.CorrectAnswer;
 import util.GraphLoader;
 
 public class LouvainGrader extends Grader {
     private static final int TESTS = 4;
+    private Set<List<Integer>> lastResult;
 
     public static void main(String[] args) {
         Grader grader = new LouvainGrader();
@@ -76,6 +79,10 @@ public class LouvainGrader extends Grader {
         
         CorrectAnswer corr = new CorrectAnswer("data/lou_answers/lou_" + i + ".txt");
         judgeLouvain(i, graph, corr);
+        
+        CompactGraph compact = graph.toCompactGraph();
+        feedback += " Modularity: " + Modularity.of(compact, lastResult, 1.0) 
+                + ", expected: " + Modularity.of(compact, new HashSet<List<Integer>>(corr.path), 1.0) + ".";
     }
     
     /** Compare the user's result with the right answer.
@@ -90,6 +97,7 @@ public class LouvainGrader extends Grader {
         // Prints the shortest path from vertex "start" to vertex "end". 
         feedback += appendFeedback(i, "Running Louvain algorithm");
         Set<List<Integer>> path = graph.getCommunities();
+        lastResult = path;
 
     	printResult(path, corr);
     }
@@ -25,14 +25,21 @@ import graph.Graph;
 public class SCCGrader extends Grader {
     public int totalTests;
     public int testsPassed;
+    // the threads of CapGraph.getSCCs, more than 1 checks the parallel mode
+    private int threads;
 
     public SCCGrader() {
+        this(1);
+    }
+
+    public SCCGrader(int threads) {
+        this.threads = threads;
         totalTests = 0;
         testsPassed = 0;
     }
     @SuppressWarnings("deprecation")
 	public static void main(String[] args) {
-        SCCGrader grader = new SCCGrader();
+        SCCGrader grader = new SCCGrader(args.length > 0 ? Integer.parseInt(args[0]) : 1);
         Thread thread = new Thread(grader);
         thread.start();
         long endTime = System.currentTimeMillis() + 30000;
@@ -63,7 +70,9 @@ public class SCCGrader extends Grader {
         try {
 
             for(int i = 0; i < 10; i++) {
-                Graph g = new CapGraph();
+                CapGraph cg = new CapGraph();
+                cg.setSCCThreads(threads);
+                Graph g = cg;
                 Set<Integer> vertices;
 
                 String answerFile = "data/scc_answers/scc_" + (i + 1) + ".txt";
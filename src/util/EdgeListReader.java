@@ -0,0 +1,142 @@
+/**
+ * @author Aleksandr Solnyshkov
+ *
+ * Fast reader of the edge list files. The file is read through an NIO
+ * channel into a reused byte buffer and the ASCII integers are decoded
+ * byte by byte, without regular expressions or boxing.
+ *
+ */
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class EdgeListReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Receives the edges in the order they appear in the file. */
+    public interface EdgeHandler {
+        void edge(int from, int to);
+    }
+
+    /**
+     * Reads the edges from a file.
+     * The file should consist of lines with 2 integers each, corresponding
+     * to a "from" vertex and a "to" vertex. Lines starting with '#' are
+     * comments.
+     * @param filename The file to read from
+     * @param handler The receiver of the edges
+     * @return The number of the edges read
+     * @throws IOException if the file can't be read or isn't an edge list
+     */
+    public static long read(String filename, EdgeHandler handler) throws IOException {
+        long edges = 0;
+        long position = 0;
+        long value = 0;
+        boolean inNumber = false;
+        boolean negative = false;
+        boolean comment = false;
+        boolean haveFirst = false;
+        int first = 0;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            byte[] bytes = buffer.array();
+            int n;
+            while ((n = channel.read(buffer)) != -1) {
+                for (int i = 0; i < n; i++, position++) {
+                    byte b = bytes[i];
+                    if (comment) {
+                        comment = b != '\n';
+                    } else if (b >= '0' && b <= '9') {
+                        value = value * 10 + (b - '0');
+                        if (value > Integer.MAX_VALUE + 1L) {
+                            throw new IOException(filename + ": number too large at byte " + position);
+                        }
+                        inNumber = true;
+                    } else if (b == '-' && !inNumber && !negative) {
+                        negative = true;
+                    } else if (b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == ',' || b == '#') {
+                        if (inNumber) {
+                            int number = toInt(value, negative, filename, position);
+                            if (haveFirst) {
+                                handler.edge(first, number);
+                                edges++;
+                            } else {
+                                first = number;
+                            }
+                            haveFirst = !haveFirst;
+                        } else if (negative) {
+                            throw new IOException(filename + ": sign without number at byte " + position);
+                        }
+                        value = 0;
+                        inNumber = false;
+                        negative = false;
+                        comment = b == '#';
+                    } else {
+                        throw new IOException(filename + ": unexpected character at byte " + position);
+                    }
+                }
+                buffer.clear();
+            }
+        }
+        if (inNumber) {
+            int number = toInt(value, negative, filename, position);
+            if (haveFirst) {
+                handler.edge(first, number);
+                edges++;
+            }
+            haveFirst = !haveFirst;
+        }
+        if (haveFirst) {
+            throw new IOException(filename + ": the last edge has no end vertex");
+        }
+        return edges;
+    }
+
+    /**
+     * Reads all edges from a file at once.
+     * @param filename The file to read from
+     * @return The array of the pairs from0, to0, from1, to1, ... of the exact length
+     * @throws IOException if the file can't be read or isn't an edge list
+     */
+    public static int[] readEdges(String filename) throws IOException {
+        long size;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            size = channel.size();
+        }
+        // a number with its separator takes about six bytes in our data files
+        EdgeArray edges = new EdgeArray((int) Math.min(size / 6 + 2, Integer.MAX_VALUE - 8));
+        read(filename, edges);
+        return Arrays.copyOf(edges.pairs, edges.size);
+    }
+
+    private static int toInt(long value, boolean negative, String filename, long position) throws IOException {
+        long v = negative ? -value : value;
+        if (v > Integer.MAX_VALUE) {
+            throw new IOException(filename + ": number too large at byte " + position);
+        }
+        return (int) v;
+    }
+
+    private static class EdgeArray implements EdgeHandler {
+        int[] pairs;
+        int size;
+
+        EdgeArray(int capacity) {
+            pairs = new int[Math.max(capacity, 2)];
+        }
+
+        public void edge(int from, int to) {
+            if (size + 2 > pairs.length) {
+                pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+            }
+            pairs[size++] = from;
+            pairs[size++] = to;
+        }
+    }
+}
@@ -6,42 +6,56 @@
  */
 package util;
 
-import java.io.File;
-import java.util.HashSet;
-import java.util.Scanner;
-import java.util.Set;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 public class GraphLoader {
     /**
      * Loads graph with data from a file.
      * The file should consist of lines with 2 integers each, corresponding
      * to a "from" vertex and a "to" vertex.
+     * @throws UncheckedIOException if the file can't be read
      */ 
     public static void loadGraph(graph.Graph g, String filename) {
-        Set<Integer> seen = new HashSet<Integer>();
-        Scanner sc;
         try {
-            sc = new Scanner(new File(filename));
-        } catch (Exception e) {
-            e.printStackTrace();
-            return;
-        }
-        // Iterate over the lines in the file, adding new
-        // vertices as they are found and connecting them with edges.
-        while (sc.hasNextInt()) {
-            int v1 = sc.nextInt();
-            int v2 = sc.nextInt();
-            if (!seen.contains(v1)) {
+            // Iterate over the edges in the file, adding new
+            // vertices as they are found and connecting them with edges.
+            // addVertex ignores the vertices which are already there.
+            EdgeListReader.read(filename, (v1, v2) -> {
                 g.addVertex(v1);
-                seen.add(v1);
-            }
-            if (!seen.contains(v2)) {
                 g.addVertex(v2);
-                seen.add(v2);
-            }
-            g.addEdge(v1, v2);
+                g.addEdge(v1, v2);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads the builder of a compact graph with data from a file.
+     * The file should consist of lines with 2 integers each, corresponding
+     * to a "from" vertex and a "to" vertex. All edges are read into one
+     * array and added to the builder at once.
+     * @throws UncheckedIOException if the file can't be read
+     */ 
+    public static void loadGraph(graph.CompactGraph.Builder builder, String filename) {
+        int[] edges;
+        try {
+            edges = EdgeListReader.readEdges(filename);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        
-        sc.close();
+        // The builder collects the vertices from the ends of the edges itself.
+        builder.addEdges(edges, edges.length / 2);
+    }
+
+    /**
+     * Loads a compact graph with data from a file.
+     * @throws UncheckedIOException if the file can't be read
+     */ 
+    public static graph.CompactGraph loadCompactGraph(String filename) {
+        graph.CompactGraph.Builder builder = new graph.CompactGraph.Builder();
+        loadGraph(builder, filename);
+        return builder.build();
     }
 }
@@ -6,10 +6,8 @@
  */
 package util;
 
-import java.io.File;
-import java.util.HashSet;
-import java.util.Scanner;
-import java.util.Set;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 import org.jgrapht.Graph;
 import org.jgrapht.graph.DefaultEdge;
@@ -19,33 +17,20 @@ public class GraphTLoader {
      * Loads graph with data from a file.
      * The file should consist of lines with 2 integers each, corresponding
      * to a "from" vertex and a "to" vertex.
+     * @throws UncheckedIOException if the file can't be read
      */ 
     public static void loadGraph(Graph<Integer, DefaultEdge> graph, String filename) {
-        Set<Integer> seen = new HashSet<Integer>();
-        Scanner sc;
         try {
-            sc = new Scanner(new File(filename));
-        } catch (Exception e) {
-            e.printStackTrace();
-            return;
-        }
-        // Iterate over the lines in the file, adding new
-        // vertices as they are found and connecting them with edges.
-        while (sc.hasNextInt()) {
-            int v1 = sc.nextInt();
-            int v2 = sc.nextInt();
-            if (!seen.contains(v1)) {
+            // Iterate over the edges in the file, adding new
+            // vertices as they are found and connecting them with edges.
+            // addVertex ignores the vertices which are already there.
+            EdgeListReader.read(filename, (v1, v2) -> {
                 graph.addVertex(v1);
-                seen.add(v1);
-            }
-            if (!seen.contains(v2)) {
                 graph.addVertex(v2);
-                seen.add(v2);
-            }
-            graph.addEdge(v1, v2);
+                graph.addEdge(v1, v2);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        
-        sc.close();
     }
 }
-